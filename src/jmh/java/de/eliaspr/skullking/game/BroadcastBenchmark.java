@@ -0,0 +1,109 @@
+package de.eliaspr.skullking.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.eliaspr.skullking.models.GameStateApiModel;
+import de.eliaspr.skullking.simulation.RandomStrategy;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building and serializing a full game state snapshot for every player of a game, which is in the
+ * middle of the last round. The players have no web socket session, so the encoded messages are
+ * dropped instead of being sent.
+ *
+ * <p>{@link #serializeSnapshotPerPlayer} is the way snapshots were encoded before {@link
+ * GameStateEncoder}: a complete {@link GameStateApiModel} serialized with Jackson for every player.
+ * It does not depend on {@code binaryProtocol} and compares with the text protocol results of
+ * {@link #sendSnapshotToAllPlayers}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastBenchmark {
+
+    @Param({"2", "3", "4", "5", "6"})
+    public int playerCount;
+
+    @Param({"false", "true"})
+    public boolean binaryProtocol;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = Game.createHeadless(42, GameEventSink.WEB_SOCKET);
+        game.execute(() -> {
+            for (var i = 1; i <= playerCount; i++) {
+                game.addPlayer("Player " + i);
+            }
+            game.resetLobbyToNewGame();
+        });
+
+        // play until the first trick of the last round is half done
+        var strategy = new RandomStrategy();
+        var rng = new SplittableRandom(42);
+        while (game.getRoundIndex() < 10
+                || game.getGameState() != Game.GameState.PLAYING_CARDS
+                || game.getPlayedCards().size() < playerCount / 2) {
+            switch (game.getGameState()) {
+                case PREDICTING_WINS -> {
+                    for (var player : game.getPlayers()) {
+                        if (player.getPredictedWins() < 0) {
+                            player.notifyPredictedWins(strategy.predictWins(game, player, rng));
+                        }
+                    }
+                }
+                case PLAYING_CARDS -> {
+                    var player = game.getNextPlayer();
+                    var trickCode = strategy.chooseCard(game, player, game.getLegalMoves(player), rng);
+                    player.notifyPlayCard(TrickEngine.getCard(trickCode), TrickEngine.getScaryMaryMode(trickCode));
+                }
+                case WAITING_FOR_CONTINUE -> game.getGameMaster().requestGameContinue();
+                default -> throw new IllegalStateException("Unexpected game state " + game.getGameState());
+            }
+        }
+        for (var player : game.getPlayers()) {
+            player.binaryProtocol = binaryProtocol;
+        }
+    }
+
+    @Benchmark
+    public void sendSnapshotToAllPlayers() {
+        for (var player : game.getPlayers()) {
+            player.sentStateVersion = -1;
+        }
+        game.sendGameStateToPlayers();
+    }
+
+    @Benchmark
+    public int serializeSnapshotPerPlayer() throws JsonProcessingException {
+        var gameState = game.getGameState().toString();
+        var playerApiModels = game.getPlayerApiModels();
+        var length = 0;
+        for (var player : game.getPlayers()) {
+            var cards = new ArrayList<String>();
+            player.currentCards.forEach(card -> cards.add(card.cardID));
+            var apiModel = new GameStateApiModel(
+                    0,
+                    gameState,
+                    game.getRoundIndex(),
+                    playerApiModels.length,
+                    playerApiModels,
+                    cards.toArray(String[]::new),
+                    player == game.getGameMaster());
+            length += jsonMapper.writeValueAsString(apiModel).length();
+        }
+        return length;
+    }
+}
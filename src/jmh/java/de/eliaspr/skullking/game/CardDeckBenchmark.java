@@ -0,0 +1,50 @@
+package de.eliaspr.skullking.game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shuffling the deck and dealing a round, the same work as {@code Game.shuffleCards}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CardDeckBenchmark {
+
+    @Param({"1", "10"})
+    public int roundIndex;
+
+    private final CardDeck deck = new CardDeck();
+    private final CardHand[] hands = new CardHand[6];
+    private SplittableRandom rng;
+
+    @Setup
+    public void setup() {
+        rng = new SplittableRandom(42);
+        for (var i = 0; i < hands.length; i++) {
+            hands[i] = new CardHand();
+        }
+    }
+
+    @Benchmark
+    public CardHand[] shuffleAndDeal() {
+        deck.shuffle(rng);
+        for (var hand : hands) {
+            hand.clear();
+        }
+        for (var i = 1; i <= roundIndex; i++) {
+            for (var hand : hands) {
+                hand.add(deck.drawCard());
+            }
+        }
+        return hands;
+    }
+}
@@ -0,0 +1,63 @@
+package de.eliaspr.skullking.game;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Looking up games by code and by id with 10k registered games.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SkullKingBenchmark {
+
+    private static final int GAME_COUNT = 10_000;
+
+    private final int[] gameCodes = new int[GAME_COUNT];
+    private final UUID[] gameUUIDs = new UUID[GAME_COUNT];
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (var i = 0; i < GAME_COUNT; i++) {
+            var token = SkullKing.getAccessTokenForPlayer(0, "Player");
+            var game = Player.getPlayer(token).game;
+            gameCodes[i] = game.gameCode;
+            gameUUIDs[i] = game.gameUUID;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (var gameUUID : gameUUIDs) {
+            var game = SkullKing.getGame(gameUUID);
+            if (game != null) {
+                game.submit(() -> {
+                            SkullKing.closeGame(game);
+                            return null;
+                        })
+                        .join();
+            }
+        }
+    }
+
+    @Benchmark
+    public Game getGameByCode() {
+        index = (index + 1) % GAME_COUNT;
+        return SkullKing.getGame(gameCodes[index]);
+    }
+
+    @Benchmark
+    public Game getGameByUUID() {
+        index = (index + 1) % GAME_COUNT;
+        return SkullKing.getGame(gameUUIDs[index]);
+    }
+}
@@ -0,0 +1,94 @@
+package de.eliaspr.skullking.game;
+
+import de.eliaspr.skullking.simulation.RandomStrategy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Capturing and encoding the snapshot of many games, and decoding and restoring them again like
+ * during a restart of the server. The games have two to six players and are stopped at random
+ * points of the game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"10000"})
+    public int gameCount;
+
+    private List<Game> games;
+    private byte[] encodedSnapshots;
+
+    @Setup
+    public void setup() throws IOException {
+        var strategy = new RandomStrategy();
+        var rng = new SplittableRandom(42);
+        games = new ArrayList<>(gameCount);
+        for (var i = 0; i < gameCount; i++) {
+            var game = Game.createHeadless(i, GameEventSink.NONE);
+            var playerCount = 2 + i % 5;
+            game.execute(() -> {
+                for (var j = 1; j <= playerCount; j++) {
+                    game.addPlayer("Player " + j);
+                }
+                game.resetLobbyToNewGame();
+            });
+            for (var step = rng.nextInt(400); step > 0 && game.getGameState() != Game.GameState.FINISHED; step--) {
+                switch (game.getGameState()) {
+                    case PREDICTING_WINS -> {
+                        for (var player : game.getPlayers()) {
+                            if (player.getPredictedWins() < 0) {
+                                player.notifyPredictedWins(strategy.predictWins(game, player, rng));
+                            }
+                        }
+                    }
+                    case PLAYING_CARDS -> {
+                        var player = game.getNextPlayer();
+                        var trickCode = strategy.chooseCard(game, player, game.getLegalMoves(player), rng);
+                        player.notifyPlayCard(TrickEngine.getCard(trickCode), TrickEngine.getScaryMaryMode(trickCode));
+                    }
+                    case WAITING_FOR_CONTINUE -> game.getGameMaster().requestGameContinue();
+                    default -> throw new IllegalStateException("Unexpected game state " + game.getGameState());
+                }
+            }
+            games.add(game);
+        }
+        encodedSnapshots = encodeSnapshots();
+    }
+
+    @Benchmark
+    public byte[] encodeSnapshots() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        for (var game : games) {
+            game.captureSnapshot(1).write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Game[] restoreGames() throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(encodedSnapshots));
+        var restored = new Game[gameCount];
+        for (var i = 0; i < gameCount; i++) {
+            restored[i] = Game.restore(GameSnapshot.read(in, GameSnapshotWriter.FORMAT_VERSION));
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,70 @@
+package de.eliaspr.skullking.game;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Trick resolution (used by {@code Game.getWinningCard}) and the legality check of
+ * {@code Game.playCard} on randomly dealt tricks and hands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrickEngineBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"2", "4", "6"})
+    public int playerCount;
+
+    private int[][] tricks;
+    private long[] hands;
+    private Card[] cards;
+    private int index;
+
+    @Setup
+    public void setup() {
+        var rng = new SplittableRandom(42);
+        var deck = new CardDeck();
+        tricks = new int[SAMPLES][];
+        hands = new long[SAMPLES];
+        cards = new Card[SAMPLES];
+        for (var i = 0; i < SAMPLES; i++) {
+            deck.shuffle(rng);
+            tricks[i] = new int[6];
+            for (var j = 0; j < playerCount; j++) {
+                var card = deck.drawCard();
+                var mode = rng.nextBoolean() ? ScaryMaryMode.PLAY_AS_PIRATE : ScaryMaryMode.PLAY_AS_FLAG;
+                tricks[i][j] = TrickEngine.getTrickCode(card, mode);
+            }
+            var hand = new CardHand();
+            for (var j = 0; j < 10; j++) {
+                hand.add(deck.drawCard());
+            }
+            hands[i] = hand.getMask();
+            cards[i] = deck.drawCard();
+        }
+    }
+
+    @Benchmark
+    public int resolveTrick() {
+        index = (index + 1) & (SAMPLES - 1);
+        return TrickEngine.resolve(tricks[index], playerCount);
+    }
+
+    @Benchmark
+    public boolean isLegalMove() {
+        index = (index + 1) & (SAMPLES - 1);
+        // the card is checked against a trick with all but the last card played
+        var hand = hands[index] | CardHand.getCardMask(cards[index]);
+        return TrickEngine.isLegalMove(cards[index], hand, tricks[index], playerCount - 1);
+    }
+}
@@ -0,0 +1,50 @@
+package de.eliaspr.skullking.server;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Loading static files from the classpath compared to answering a request from the static file
+ * cache, once for a small and once for a large file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StaticFileHandlerBenchmark {
+
+    @Param({"css/skull-king.css", "js/bootstrap-5.3.6.min.js"})
+    public String file;
+
+    private StaticAssetCache cache;
+    private String eTag;
+
+    @Setup
+    public void setup() throws IOException {
+        cache = StaticAssetCache.load("htdocs");
+        eTag = cache.get(file).eTag();
+    }
+
+    @Benchmark
+    public byte[] readFileContents() throws IOException {
+        return StaticFileHandler.readeFileContents("htdocs/" + file);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> respondFromCache() {
+        return cache.respond(file, null, "gzip, deflate, br");
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> respondNotModified() {
+        return cache.respond(file, eTag, null);
+    }
+}
@@ -0,0 +1,89 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.Card;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing the commands received by {@link WebSocketHandler} over the text protocol.
+ * {@link #parseLegacy} is the parsing the handler did before {@link TextCommandParser}, with
+ * {@code split}, {@code substring} and {@link UUID#fromString}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextCommandParserBenchmark {
+
+    private final TextCommandParser parser = new TextCommandParser();
+    private String[] messages;
+    private int index;
+
+    @Setup
+    public void setup() {
+        var token = UUID.randomUUID();
+        messages = new String[] {
+            "connect:" + token,
+            "game:" + token + ":predict3",
+            "game:" + token + ":playr13",
+            "game:" + token + ":playscarymary_pirate",
+            "game:" + token + ":continue",
+            "game:" + token + ":resync",
+            "game:" + token + ":playunknown",
+            "disconnect:" + token
+        };
+    }
+
+    @Benchmark
+    public boolean parse() {
+        index = (index + 1) & (messages.length - 1);
+        return parser.parse(messages[index]);
+    }
+
+    @Benchmark
+    public boolean parseLegacy() {
+        index = (index + 1) & (messages.length - 1);
+        var msg = messages[index];
+        if (msg.startsWith("connect") || msg.startsWith("disconnect")) {
+            var i = msg.indexOf(':');
+            return i > 0 && i < msg.length() - 1 && parseUUID(msg.substring(i + 1)) != null;
+        } else if (msg.startsWith("game")) {
+            var spl = msg.split(":");
+            return spl.length > 2 && parseUUID(spl[1]) != null && parseLegacyCommand(spl[2]);
+        }
+        return false;
+    }
+
+    private static boolean parseLegacyCommand(String cmd) {
+        if (cmd.equals("start") || cmd.equals("continue") || cmd.equals("resync") || cmd.equals("addbot")) {
+            return true;
+        } else if (cmd.startsWith("predict")) {
+            try {
+                Integer.parseInt(cmd.substring(7));
+                return true;
+            } catch (NumberFormatException ignored) {
+                return false;
+            }
+        } else if (cmd.startsWith("play")) {
+            var cardID = cmd.substring(4);
+            return cardID.equalsIgnoreCase("scarymary_flag")
+                    || cardID.equalsIgnoreCase("scarymary_pirate")
+                    || Card.getCard(cardID) != null;
+        }
+        return false;
+    }
+
+    private static UUID parseUUID(String text) {
+        try {
+            return UUID.fromString(text);
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package de.eliaspr.skullking.loadtest;
+
+import de.eliaspr.skullking.server.SkullKingServer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load generator which plays complete games over web sockets. Each table joins a new game via
+ * {@code /game/play} like the browser does, connects all its players to {@code /ws} and plays with
+ * random legal moves. Unless a server URL is given, the server is started in the same process on a
+ * random port, so the test runs on a single machine without any external services.
+ *
+ * <p>Started with {@code gradlew loadTest --args="--tables=500 --players=4 --think-time-ms=500"}.
+ */
+public class LoadTest {
+
+    private static final Pattern LOBBY_CODE_PATTERN = Pattern.compile("id=\"lobby-code\"[^>]*>(\\d+)<");
+    private static final Duration HTTP_TIMEOUT = Duration.ofSeconds(30);
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    private final String baseUrl;
+    private final int tableCount;
+    private final int playersPerTable;
+    private final long thinkTimeMillis;
+    private final boolean binaryProtocol;
+    private final HttpClient httpClient;
+    private final LoadTestStatistics statistics = new LoadTestStatistics();
+    private final ConcurrentLinkedQueue<LoadTestClient> clients = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    private volatile boolean running = true;
+
+    LoadTest(String baseUrl, int tableCount, int playersPerTable, long thinkTimeMillis, boolean binaryProtocol) {
+        this.baseUrl = baseUrl;
+        this.tableCount = tableCount;
+        this.playersPerTable = playersPerTable;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.binaryProtocol = binaryProtocol;
+        httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(HTTP_TIMEOUT)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        var tables = 100;
+        var players = 4;
+        var thinkTime = 500L;
+        var duration = 60L;
+        var rampUp = 10L;
+        var binary = false;
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            var key = separator < 0 ? arg : arg.substring(0, separator);
+            var value = separator < 0 ? "" : arg.substring(separator + 1);
+            switch (key) {
+                case "--url" -> url = value;
+                case "--tables" -> tables = Integer.parseInt(value);
+                case "--players" -> players = Integer.parseInt(value);
+                case "--think-time-ms" -> thinkTime = Long.parseLong(value);
+                case "--duration-s" -> duration = Long.parseLong(value);
+                case "--ramp-up-s" -> rampUp = Long.parseLong(value);
+                case "--protocol" -> binary = value.equals("binary");
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg
+                        + ", expected --url, --tables, --players, --think-time-ms, --duration-s, --ramp-up-s"
+                        + " or --protocol=(text|binary)");
+            }
+        }
+        if (players < 2 || players > 6) {
+            throw new IllegalArgumentException("A table needs 2 to 6 players");
+        }
+
+        ConfigurableApplicationContext server = null;
+        if (url == null) {
+            // the management port is not needed and could clash with a server running on this machine
+            server = SpringApplication.run(
+                    SkullKingServer.class,
+                    "--server.port=0",
+                    "--skullking.management.port=0",
+                    "--logging.level.root=WARN");
+            url = "http://localhost:" + server.getEnvironment().getProperty("local.server.port");
+        }
+        System.out.println("Running " + tables + " tables with " + players + " players against " + url + " ("
+                + (binary ? "binary" : "text") + " protocol, think time " + thinkTime + " ms)");
+
+        var loadTest = new LoadTest(url, tables, players, thinkTime, binary);
+        loadTest.run(duration, rampUp);
+
+        if (server != null) {
+            server.close();
+        }
+        System.exit(loadTest.statistics.getErrorCount() == 0 ? 0 : 1);
+    }
+
+    void run(long durationSeconds, long rampUpSeconds) throws InterruptedException {
+        var start = System.nanoTime();
+        var rampUpNanos = TimeUnit.SECONDS.toNanos(rampUpSeconds);
+        try (var tableStarter = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var i = 0; i < tableCount; i++) {
+                var tableIndex = i;
+                var delay = rampUpNanos * i / tableCount;
+                tableStarter.submit(() -> {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                    openTable(tableIndex);
+                    return null;
+                });
+            }
+
+            var lastCommands = 0L;
+            var lastFrames = 0L;
+            var lastProgress = start;
+            var end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            while (System.nanoTime() - end < 0) {
+                var remaining = end - System.nanoTime();
+                TimeUnit.NANOSECONDS.sleep(Math.min(TimeUnit.SECONDS.toNanos(PROGRESS_INTERVAL_SECONDS), remaining));
+                var now = System.nanoTime();
+                var seconds = Math.max((now - lastProgress) / 1e9, 0.001);
+                var commands = statistics.getCommandsSent();
+                var frames = statistics.getStateFramesReceived();
+                statistics.printProgress(
+                        System.out,
+                        TimeUnit.NANOSECONDS.toSeconds(now - start),
+                        (long) ((commands - lastCommands) / seconds),
+                        (long) ((frames - lastFrames) / seconds));
+                lastCommands = commands;
+                lastFrames = frames;
+                lastProgress = now;
+            }
+            running = false;
+            tableStarter.shutdownNow();
+        }
+
+        for (var client : clients) {
+            client.close();
+        }
+        scheduler.shutdownNow();
+        statistics.printSummary(System.out, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void openTable(int tableIndex) {
+        try {
+            var tokens = new ArrayList<UUID>();
+            var names = new ArrayList<String>();
+            var gameCode = 0;
+            for (var i = 0; i < playersPerTable; i++) {
+                var name = "Table " + tableIndex + " Player " + (i + 1);
+                var token = joinGame(gameCode, name);
+                if (token == null) {
+                    statistics.error("join rejected");
+                    return;
+                }
+                if (i == 0) {
+                    gameCode = getLobbyCode(token);
+                }
+                tokens.add(token);
+                names.add(name);
+            }
+            connectPlayers(names, tokens);
+        } catch (IOException e) {
+            statistics.error("http request failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void connectPlayers(List<String> names, List<UUID> tokens) {
+        var uri = URI.create(baseUrl.replaceFirst("^http", "ws") + "/ws");
+        for (var i = 0; i < tokens.size(); i++) {
+            var client = new LoadTestClient(
+                    names.get(i),
+                    tokens.get(i),
+                    tokens.size(),
+                    binaryProtocol,
+                    thinkTimeMillis,
+                    statistics,
+                    scheduler,
+                    () -> running);
+            clients.add(client);
+            client.connect(httpClient, uri).exceptionally(error -> {
+                statistics.error("connect failed");
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Joins the game with the given code, or creates a new game if the code is 0. Returns the
+     * player token from the redirect to the lobby, or null if the server rejected the player.
+     */
+    private UUID joinGame(int gameCode, String playerName) throws IOException, InterruptedException {
+        var uri = URI.create(baseUrl + "/game/play?code=" + gameCode + "&name="
+                + URLEncoder.encode(playerName, StandardCharsets.UTF_8));
+        var response = httpClient.send(
+                HttpRequest.newBuilder(uri).timeout(HTTP_TIMEOUT).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+        var location = response.headers().firstValue("Location").orElse("");
+        var tokenStart = location.indexOf("token=");
+        if (tokenStart < 0) {
+            return null;
+        }
+        return UUID.fromString(location.substring(tokenStart + 6));
+    }
+
+    private int getLobbyCode(UUID token) throws IOException, InterruptedException {
+        var uri = URI.create(baseUrl + "/game/lobby?token=" + token);
+        var response = httpClient.send(
+                HttpRequest.newBuilder(uri).timeout(HTTP_TIMEOUT).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        var matcher = LOBBY_CODE_PATTERN.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IOException("Lobby page does not contain the game code");
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,379 @@
+package de.eliaspr.skullking.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.CardHand;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.ScaryMaryMode;
+import de.eliaspr.skullking.game.TrickEngine;
+import de.eliaspr.skullking.server.BinaryProtocol;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A single simulated player. The client keeps track of the game state from the received snapshots
+ * and patches (or binary state frames) and answers with a random legal move after the think time.
+ * The latency of start, play and continue commands is measured until the next state frame arrives,
+ * predictions are not measured because the server only answers once all players predicted.
+ */
+class LoadTestClient implements WebSocket.Listener {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final String name;
+    private final UUID token;
+    private final int tableSize;
+    private final boolean binaryProtocol;
+    private final long thinkTimeMillis;
+    private final LoadTestStatistics statistics;
+    private final ScheduledExecutorService scheduler;
+    private final BooleanSupplier startNewGames;
+
+    private final StringBuilder textBuffer = new StringBuilder();
+    private final ByteArrayOutputStream binaryBuffer = new ByteArrayOutputStream();
+    private WebSocket webSocket;
+    private CompletableFuture<?> sendChain = CompletableFuture.completedFuture(null);
+    private volatile boolean closing = false;
+    private volatile long commandSentAt = 0;
+
+    // game state as seen by this client, only accessed from the listener callbacks
+    private Game.GameState gameState = Game.GameState.WAITING_FOR_START;
+    private int version = -1;
+    private int roundIndex;
+    private boolean gameMaster;
+    private int playerCount;
+    private int ownIndex = -1;
+    private final boolean[] nextTurn = new boolean[6];
+    private final int[] playedCards = new int[6];
+    private final CardHand cards = new CardHand();
+    private String lastActionKey = "";
+
+    LoadTestClient(
+            String name,
+            UUID token,
+            int tableSize,
+            boolean binaryProtocol,
+            long thinkTimeMillis,
+            LoadTestStatistics statistics,
+            ScheduledExecutorService scheduler,
+            BooleanSupplier startNewGames) {
+        this.name = name;
+        this.token = token;
+        this.tableSize = tableSize;
+        this.binaryProtocol = binaryProtocol;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.statistics = statistics;
+        this.scheduler = scheduler;
+        this.startNewGames = startNewGames;
+    }
+
+    CompletableFuture<WebSocket> connect(HttpClient httpClient, URI uri) {
+        var builder = httpClient.newWebSocketBuilder();
+        if (binaryProtocol) {
+            builder.subprotocols(BinaryProtocol.SUB_PROTOCOL);
+        }
+        return builder.buildAsync(uri, this);
+    }
+
+    void close() {
+        closing = true;
+        synchronized (this) {
+            if (webSocket != null) {
+                sendChain = sendChain.thenCompose(ignored -> webSocket.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        synchronized (this) {
+            this.webSocket = webSocket;
+        }
+        statistics.clientConnected();
+        send("connect:" + token, BinaryProtocol.CMD_CONNECT, false);
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        textBuffer.append(data);
+        if (last) {
+            try {
+                handleTextMessage(jsonMapper.readTree(textBuffer.toString()));
+            } catch (IOException e) {
+                statistics.error("invalid message");
+            }
+            textBuffer.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        var bytes = new byte[data.remaining()];
+        data.get(bytes);
+        binaryBuffer.write(bytes, 0, bytes.length);
+        if (last) {
+            var frame = ByteBuffer.wrap(binaryBuffer.toByteArray());
+            binaryBuffer.reset();
+            if (frame.get() == BinaryProtocol.FRAME_STATE) {
+                readStateFrame(frame);
+                onStateReceived();
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        statistics.clientDisconnected();
+        if (!closing) {
+            statistics.error("closed by server");
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        statistics.clientDisconnected();
+        if (!closing) {
+            statistics.error("web socket error");
+        }
+    }
+
+    private void handleTextMessage(JsonNode message) {
+        if (message.has("patch")) {
+            if (message.path("version").asInt() != version + 1) {
+                // the client missed a version, same as the browser client it asks for a snapshot
+                statistics.error("missed version");
+                version = -1;
+                send("game:" + token + ":resync", BinaryProtocol.CMD_RESYNC, false);
+                return;
+            }
+            version++;
+            for (var playerPatch : message.get("patch")) {
+                var index = playerPatch.get("index").asInt();
+                if (playerPatch.has("nextTurn")) {
+                    nextTurn[index] = playerPatch.get("nextTurn").asBoolean();
+                }
+                if (playerPatch.has("playedCard")) {
+                    playedCards[index] = parsePlayedCard(playerPatch.get("playedCard"));
+                }
+            }
+            for (var card : message.get("removedCards")) {
+                cards.remove(Card.getCard(card.asText()));
+            }
+            onStateReceived();
+        } else if (message.has("gameState")) {
+            version = message.path("version").asInt(-1);
+            gameState = Game.GameState.valueOf(message.get("gameState").asText());
+            roundIndex = message.path("roundIndex").asInt();
+            gameMaster = message.path("gameMaster").asBoolean();
+            var players = message.get("players");
+            playerCount = players.size();
+            for (var i = 0; i < playerCount; i++) {
+                var player = players.get(i);
+                if (name.equals(player.path("name").asText())) {
+                    ownIndex = i;
+                }
+                nextTurn[i] = player.path("nextTurn").asBoolean();
+                playedCards[i] = parsePlayedCard(player.get("playedCard"));
+            }
+            cards.clear();
+            for (var card : message.get("cards")) {
+                cards.add(Card.getCard(card.asText()));
+            }
+            onStateReceived();
+        }
+    }
+
+    private static int parsePlayedCard(JsonNode playedCard) {
+        if (playedCard == null || playedCard.isNull()) {
+            return -1;
+        }
+        return switch (playedCard.asText()) {
+            case "scarymary-flag" -> TrickEngine.SCARY_MARY_AS_FLAG;
+            case "scarymary-pirate" -> TrickEngine.SCARY_MARY_AS_PIRATE;
+            default -> Card.getCard(playedCard.asText()).ordinal();
+        };
+    }
+
+    private void readStateFrame(ByteBuffer frame) {
+        version = frame.getInt();
+        gameState = Game.GameState.values()[frame.get()];
+        roundIndex = frame.get();
+        playerCount = frame.get();
+        var ownName = name.getBytes(StandardCharsets.UTF_8);
+        for (var i = 0; i < playerCount; i++) {
+            var playerName = new byte[frame.get() & 0xFF];
+            frame.get(playerName);
+            if (Arrays.equals(playerName, ownName)) {
+                ownIndex = i;
+            }
+            var flags = frame.get();
+            frame.get(); // predicted
+            frame.get(); // actual
+            frame.getShort(); // points
+            var playedCard = frame.get() & 0xFF;
+            nextTurn[i] = (flags & BinaryProtocol.PLAYER_FLAG_NEXT_TURN) != 0;
+            if (playedCard == BinaryProtocol.NO_CARD) {
+                playedCards[i] = -1;
+            } else if (playedCard == Card.SCARY_MARY.ordinal()) {
+                playedCards[i] = (flags & BinaryProtocol.PLAYER_FLAG_SCARY_MARY_PIRATE) != 0
+                        ? TrickEngine.SCARY_MARY_AS_PIRATE
+                        : TrickEngine.SCARY_MARY_AS_FLAG;
+            } else {
+                playedCards[i] = playedCard;
+            }
+        }
+        gameMaster = frame.get() == 1;
+        cards.clear();
+        for (var i = frame.get(); i > 0; i--) {
+            cards.add(Card.fromOrdinal(frame.get()));
+        }
+    }
+
+    private void onStateReceived() {
+        statistics.stateFrameReceived();
+        var sentAt = commandSentAt;
+        if (sentAt != 0) {
+            commandSentAt = 0;
+            statistics.recordLatency(System.nanoTime() - sentAt);
+        }
+        if (ownIndex < 0) {
+            return;
+        }
+
+        switch (gameState) {
+            case WAITING_FOR_START -> {
+                if (gameMaster && playerCount == tableSize && isNewAction("start")) {
+                    sendLater("game:" + token + ":start", BinaryProtocol.CMD_START, true);
+                }
+            }
+            case PREDICTING_WINS -> {
+                if (isNewAction("predict:" + roundIndex)) {
+                    var predicted = ThreadLocalRandom.current().nextInt(roundIndex + 1);
+                    sendLater("game:" + token + ":predict" + predicted, BinaryProtocol.CMD_PREDICT, false, predicted);
+                }
+            }
+            case PLAYING_CARDS -> {
+                if (nextTurn[ownIndex] && isNewAction("play:" + roundIndex + ":" + cards.size())) {
+                    playRandomCard();
+                }
+            }
+            case WAITING_FOR_CONTINUE -> {
+                if (gameMaster && isNewAction("continue:" + roundIndex + ":" + cards.size())) {
+                    sendLater("game:" + token + ":continue", BinaryProtocol.CMD_CONTINUE, true);
+                }
+            }
+            case FINISHED -> {
+                if (gameMaster && isNewAction("finished")) {
+                    statistics.gameFinished();
+                    if (startNewGames.getAsBoolean()) {
+                        sendLater("game:" + token + ":start", BinaryProtocol.CMD_START, true);
+                    }
+                }
+            }
+        }
+    }
+
+    private void playRandomCard() {
+        // the trick was started by the player which is as many seats before this one as cards were played
+        var trick = new int[6];
+        var trickSize = 0;
+        for (var i = 0; i < playerCount; i++) {
+            if (playedCards[i] >= 0) {
+                trickSize++;
+            }
+        }
+        var leader = Math.floorMod(ownIndex - trickSize, playerCount);
+        for (var i = 0; i < trickSize; i++) {
+            trick[i] = playedCards[(leader + i) % playerCount];
+        }
+
+        var legalMoves = TrickEngine.getLegalMoves(cards.getMask(), trick, trickSize);
+        if (legalMoves == 0) {
+            statistics.error("no legal card");
+            return;
+        }
+        var random = ThreadLocalRandom.current();
+        var bits = legalMoves;
+        for (var i = random.nextInt(Long.bitCount(legalMoves)); i > 0; i--) {
+            bits &= bits - 1;
+        }
+        var card = Card.fromOrdinal(Long.numberOfTrailingZeros(bits));
+        if (card == Card.SCARY_MARY) {
+            var mode = random.nextBoolean() ? ScaryMaryMode.PLAY_AS_PIRATE : ScaryMaryMode.PLAY_AS_FLAG;
+            var asPirate = mode == ScaryMaryMode.PLAY_AS_PIRATE;
+            sendLater(
+                    "game:" + token + ":playscarymary_" + (asPirate ? "pirate" : "flag"),
+                    BinaryProtocol.CMD_PLAY,
+                    true,
+                    card.ordinal(),
+                    asPirate ? 1 : 0);
+        } else {
+            sendLater("game:" + token + ":play" + card.cardID, BinaryProtocol.CMD_PLAY, true, card.ordinal());
+        }
+    }
+
+    private boolean isNewAction(String actionKey) {
+        if (actionKey.equals(lastActionKey)) {
+            return false;
+        }
+        lastActionKey = actionKey;
+        return true;
+    }
+
+    private void sendLater(String textCommand, byte opcode, boolean measured, int... arguments) {
+        var delay = thinkTimeMillis / 2 + ThreadLocalRandom.current().nextLong(thinkTimeMillis + 1);
+        scheduler.schedule(() -> send(textCommand, opcode, measured, arguments), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void send(String textCommand, byte opcode, boolean measured, int... arguments) {
+        if (closing || webSocket == null) {
+            return;
+        }
+        if (measured) {
+            commandSentAt = System.nanoTime();
+        }
+        statistics.commandSent();
+        var ws = webSocket;
+        // a web socket only allows one outstanding send, so all sends are chained
+        sendChain = sendChain.thenCompose(ignored -> binaryProtocol
+                        ? ws.sendBinary(encodeBinaryCommand(opcode, arguments), true)
+                        : ws.sendText(textCommand, true))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        statistics.error("send failed");
+                    }
+                    return null;
+                });
+    }
+
+    private ByteBuffer encodeBinaryCommand(byte opcode, int[] arguments) {
+        var frame = ByteBuffer.allocate(1 + BinaryProtocol.TOKEN_LENGTH + arguments.length);
+        frame.put(opcode);
+        frame.putLong(token.getMostSignificantBits());
+        frame.putLong(token.getLeastSignificantBits());
+        for (var argument : arguments) {
+            frame.put((byte) argument);
+        }
+        return frame.flip();
+    }
+}
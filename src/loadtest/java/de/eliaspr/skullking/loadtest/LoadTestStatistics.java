@@ -0,0 +1,125 @@
+package de.eliaspr.skullking.loadtest;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+
+/**
+ * Counters and the latency histogram shared by all clients of a load test.
+ */
+class LoadTestStatistics {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final ConcurrentHistogram latencyMicros = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+    private final LongAdder commandsSent = new LongAdder();
+    private final LongAdder stateFramesReceived = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder connectedClients = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void recordLatency(long nanos) {
+        latencyMicros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_LATENCY_MICROS));
+    }
+
+    void commandSent() {
+        commandsSent.increment();
+    }
+
+    void stateFrameReceived() {
+        stateFramesReceived.increment();
+    }
+
+    void gameFinished() {
+        gamesFinished.increment();
+    }
+
+    void clientConnected() {
+        connectedClients.increment();
+    }
+
+    void clientDisconnected() {
+        connectedClients.decrement();
+    }
+
+    void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    long getCommandsSent() {
+        return commandsSent.sum();
+    }
+
+    long getStateFramesReceived() {
+        return stateFramesReceived.sum();
+    }
+
+    long getErrorCount() {
+        var total = 0L;
+        for (var count : errors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * One line with the throughput since the previous progress line and the latency so far.
+     */
+    void printProgress(PrintStream out, long elapsedSeconds, long commandsPerSecond, long framesPerSecond) {
+        out.printf(
+                Locale.ROOT,
+                "[%4ds] clients %6d | %7d commands/s | %8d frames/s | p50 %7.2f ms | p99 %7.2f ms | games %6d |"
+                        + " errors %d%n",
+                elapsedSeconds,
+                connectedClients.sum(),
+                commandsPerSecond,
+                framesPerSecond,
+                getPercentileMillis(50),
+                getPercentileMillis(99),
+                gamesFinished.sum(),
+                getErrorCount());
+    }
+
+    void printSummary(PrintStream out, double seconds) {
+        out.println();
+        out.printf(Locale.ROOT, "Duration:           %.1f s%n", seconds);
+        out.printf(
+                Locale.ROOT,
+                "Commands sent:      %d (%.0f/s)%n",
+                commandsSent.sum(),
+                commandsSent.sum() / seconds);
+        out.printf(
+                Locale.ROOT,
+                "State frames:       %d (%.0f/s)%n",
+                stateFramesReceived.sum(),
+                stateFramesReceived.sum() / seconds);
+        out.printf(Locale.ROOT, "Games finished:     %d%n", gamesFinished.sum());
+        out.println("Latency from command to the next state frame:");
+        out.printf(
+                Locale.ROOT,
+                "  samples %d, mean %.2f ms%n",
+                latencyMicros.getTotalCount(),
+                latencyMicros.getMean() / 1000);
+        for (var percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            out.printf(Locale.ROOT, "  p%-6s %8.2f ms%n", percentile, getPercentileMillis(percentile));
+        }
+        out.printf(Locale.ROOT, "  max     %8.2f ms%n", latencyMicros.getMaxValue() / 1000.0);
+        if (errors.isEmpty()) {
+            out.println("Errors: none");
+        } else {
+            out.println("Errors:");
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(errors).entrySet()) {
+                out.printf(Locale.ROOT, "  %-20s %d%n", entry.getKey(), entry.getValue().sum());
+            }
+        }
+    }
+
+    private double getPercentileMillis(double percentile) {
+        return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,113 @@
+package de.eliaspr.skullking.bot;
+
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import de.eliaspr.skullking.game.PlayerController;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computer player making its decisions with Monte Carlo rollouts. Whenever the bot has to predict
+ * its wins or play a card, a snapshot of the visible state is taken and the rollouts are spread
+ * over a shared pool with one worker per core until the move budget is used up. The game's own
+ * commands never wait for a bot, the decision is queued as a new command once it is made.
+ */
+public class BotController implements PlayerController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BotController.class);
+    private static final ForkJoinPool rolloutPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService decisionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static volatile long moveBudgetNanos = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // only accessed from within commands of the game
+    private boolean thinking = false;
+
+    public static void configure(long moveBudgetMillis) {
+        BotController.moveBudgetNanos = TimeUnit.MILLISECONDS.toNanos(moveBudgetMillis);
+    }
+
+    @Override
+    public void onGameStateChanged(Game game, Player player) {
+        if (thinking || game.isClosed()) {
+            return;
+        }
+        if (game.getGameState() == Game.GameState.PREDICTING_WINS && player.getPredictedWins() < 0) {
+            var snapshot = RoundSnapshot.capture(game, player);
+            var candidates = MonteCarloPlanner.getPredictionCandidates(snapshot);
+            think(game, player, snapshot, candidates, true, prediction -> {
+                if (game.getGameState() == Game.GameState.PREDICTING_WINS
+                        && game.getRoundIndex() == snapshot.roundIndex
+                        && player.getPredictedWins() < 0) {
+                    game.notifyPredictedWins(player, prediction);
+                }
+            });
+        } else if (game.getGameState() == Game.GameState.PLAYING_CARDS && game.getNextPlayer() == player) {
+            var snapshot = RoundSnapshot.capture(game, player);
+            var candidates = MonteCarloPlanner.getCardCandidates(snapshot, game.getLegalMoves(player));
+            think(game, player, snapshot, candidates, false, trickCode -> {
+                if (game.getRoundIndex() == snapshot.roundIndex
+                        && player.getCurrentCards().size() == snapshot.hand.size()) {
+                    game.notifyPlayCard(
+                            player, TrickEngine.getCard(trickCode), TrickEngine.getScaryMaryMode(trickCode));
+                }
+            });
+        }
+    }
+
+    private void think(
+            Game game, Player player, RoundSnapshot snapshot, int[] candidates, boolean predicting, IntConsumer apply) {
+        thinking = true;
+        var deadline = System.nanoTime() + moveBudgetNanos;
+        CompletableFuture.supplyAsync(() -> decide(snapshot, candidates, predicting, deadline), decisionExecutor)
+                .whenComplete((decision, error) -> game.execute(() -> {
+                    thinking = false;
+                    if (game.isClosed() || player.getController() != this) {
+                        // the game was closed or the player reconnected in the meantime
+                        return;
+                    }
+                    if (error != null) {
+                        logger.error("Bot '" + player.name + "' could not make a decision", error);
+                        apply.accept(candidates[0]);
+                    } else {
+                        apply.accept(decision);
+                    }
+                    // the decision is dropped if the game moved on in the meantime, decide again
+                    onGameStateChanged(game, player);
+                }));
+    }
+
+    /**
+     * Runs on a virtual thread, which waits for the rollout workers.
+     */
+    private static int decide(RoundSnapshot snapshot, int[] candidates, boolean predicting, long deadline) {
+        if (candidates.length == 1) {
+            return candidates[0];
+        }
+        var rng = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        var workers = new ArrayList<CompletableFuture<MonteCarloPlanner.Result>>();
+        for (var i = 0; i < rolloutPool.getParallelism(); i++) {
+            var workerRng = rng.split();
+            workers.add(CompletableFuture.supplyAsync(
+                    () -> MonteCarloPlanner.runRollouts(
+                            snapshot, candidates, predicting, workerRng, deadline, Integer.MAX_VALUE),
+                    rolloutPool));
+        }
+        var result = new MonteCarloPlanner.Result(candidates.length);
+        for (var worker : workers) {
+            result.merge(worker.join());
+        }
+        logger.debug("Bot decision after " + result.getRolloutCount() + " rollouts");
+        return result.getBest(candidates);
+    }
+}
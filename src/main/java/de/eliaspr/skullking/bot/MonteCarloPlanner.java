@@ -0,0 +1,111 @@
+package de.eliaspr.skullking.bot;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.random.RandomGenerator;
+
+/**
+ * Evaluates the possible decisions of a player by playing the rest of the round many times with
+ * randomly dealt hands for the other players (see {@link Rollout}). The decision with the highest
+ * average points wins. Candidates are either the possible predictions or the trick codes of the
+ * legal cards, the rollouts cycle through them so that all candidates get the same number of
+ * rollouts.
+ */
+final class MonteCarloPlanner {
+
+    private MonteCarloPlanner() {}
+
+    static int[] getPredictionCandidates(RoundSnapshot snapshot) {
+        var candidates = new int[snapshot.roundIndex + 1];
+        for (var i = 0; i < candidates.length; i++) {
+            candidates[i] = i;
+        }
+        return candidates;
+    }
+
+    static int[] getCardCandidates(RoundSnapshot snapshot, long legalMoves) {
+        var hasScaryMary = (legalMoves & (1L << Card.SCARY_MARY.ordinal())) != 0;
+        var candidates = new int[Long.bitCount(legalMoves) + (hasScaryMary ? 1 : 0)];
+        var index = 0;
+        for (var bits = legalMoves; bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            if (ordinal == Card.SCARY_MARY.ordinal()) {
+                candidates[index++] = TrickEngine.SCARY_MARY_AS_FLAG;
+                candidates[index++] = TrickEngine.SCARY_MARY_AS_PIRATE;
+            } else {
+                candidates[index++] = ordinal;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Runs rollouts until {@code maxRollouts} is reached or {@link System#nanoTime()} passes the
+     * deadline, but at least one per candidate. If {@code predicting} is true, the candidates are
+     * predictions, otherwise trick codes.
+     */
+    static Result runRollouts(
+            RoundSnapshot snapshot,
+            int[] candidates,
+            boolean predicting,
+            RandomGenerator rng,
+            long deadline,
+            int maxRollouts) {
+        var result = new Result(candidates.length);
+        var rollout = new Rollout(snapshot);
+        var ownPrediction = snapshot.predictedWins[snapshot.seat];
+        for (var i = 0; i < maxRollouts && (i < candidates.length || System.nanoTime() - deadline < 0); i++) {
+            var candidate = i % candidates.length;
+            var points = predicting
+                    ? rollout.play(-1, candidates[candidate], rng)
+                    : rollout.play(candidates[candidate], ownPrediction, rng);
+            result.pointSums[candidate] += points;
+            result.rolloutCounts[candidate]++;
+        }
+        return result;
+    }
+
+    static final class Result {
+
+        private final long[] pointSums;
+        private final int[] rolloutCounts;
+
+        Result(int candidateCount) {
+            pointSums = new long[candidateCount];
+            rolloutCounts = new int[candidateCount];
+        }
+
+        void merge(Result other) {
+            for (var i = 0; i < pointSums.length; i++) {
+                pointSums[i] += other.pointSums[i];
+                rolloutCounts[i] += other.rolloutCounts[i];
+            }
+        }
+
+        int getRolloutCount() {
+            var total = 0;
+            for (var count : rolloutCounts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Returns the candidate with the highest average points.
+         */
+        int getBest(int[] candidates) {
+            var best = 0;
+            var bestAverage = Double.NEGATIVE_INFINITY;
+            for (var i = 0; i < candidates.length; i++) {
+                if (rolloutCounts[i] > 0) {
+                    var average = (double) pointSums[i] / rolloutCounts[i];
+                    if (average > bestAverage) {
+                        best = i;
+                        bestAverage = average;
+                    }
+                }
+            }
+            return candidates[best];
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.eliaspr.skullking.bot;
+
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import de.eliaspr.skullking.simulation.PlayerStrategy;
+import java.util.random.RandomGenerator;
+
+/**
+ * Makes the same decisions as {@link BotController}, but with a fixed number of rollouts on the
+ * calling thread instead of a time budget, so that simulations stay reproducible.
+ */
+public class MonteCarloStrategy implements PlayerStrategy {
+
+    private final int rolloutsPerDecision;
+
+    public MonteCarloStrategy(int rolloutsPerDecision) {
+        this.rolloutsPerDecision = rolloutsPerDecision;
+    }
+
+    @Override
+    public int predictWins(Game game, Player player, RandomGenerator rng) {
+        var snapshot = RoundSnapshot.capture(game, player);
+        var candidates = MonteCarloPlanner.getPredictionCandidates(snapshot);
+        return decide(snapshot, candidates, true, rng);
+    }
+
+    @Override
+    public int chooseCard(Game game, Player player, long legalMoves, RandomGenerator rng) {
+        var snapshot = RoundSnapshot.capture(game, player);
+        var candidates = MonteCarloPlanner.getCardCandidates(snapshot, legalMoves);
+        return decide(snapshot, candidates, false, rng);
+    }
+
+    private int decide(RoundSnapshot snapshot, int[] candidates, boolean predicting, RandomGenerator rng) {
+        if (candidates.length == 1) {
+            return candidates[0];
+        }
+        // the deadline is never reached, the number of rollouts is the only limit
+        var deadline = System.nanoTime() + Long.MAX_VALUE / 2;
+        return MonteCarloPlanner.runRollouts(snapshot, candidates, predicting, rng, deadline, rolloutsPerDecision)
+                .getBest(candidates);
+    }
+}
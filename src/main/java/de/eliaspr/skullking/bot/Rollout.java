@@ -0,0 +1,168 @@
+package de.eliaspr.skullking.bot;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays the rest of a round from a {@link RoundSnapshot}, after dealing the unseen cards randomly
+ * to the other players. All players follow a simple policy: while they still need wins they play
+ * their strongest legal card, otherwise their weakest one, with some random moves mixed in. An
+ * instance reuses its arrays for all rollouts, so it must only be used by one thread.
+ */
+final class Rollout {
+
+    private static final int STRONG_CARD = 70;
+    private static final double RANDOM_MOVE_PROBABILITY = 0.2;
+
+    private final RoundSnapshot snapshot;
+    private final long[] masks;
+    private final byte[][] counts;
+    private final int[] predictedWins;
+    private final int[] actualWins;
+    private final int[] trick = new int[6];
+    private final byte[] deck;
+
+    Rollout(RoundSnapshot snapshot) {
+        this.snapshot = snapshot;
+        masks = new long[snapshot.playerCount];
+        counts = new byte[snapshot.playerCount][Card.getCardTypeCount()];
+        predictedWins = new int[snapshot.playerCount];
+        actualWins = new int[snapshot.playerCount];
+        deck = new byte[snapshot.unseenCards.length];
+    }
+
+    /**
+     * Plays the rest of the round and returns the points the player of the snapshot receives for
+     * it. {@code firstMove} is the trick code the player plays next, or -1 if the round is played
+     * from the current state. {@code predictedWins} is the prediction of the player.
+     */
+    int play(int firstMove, int predictedWins, RandomGenerator rng) {
+        var s = snapshot;
+        deal(rng);
+        for (var p = 0; p < s.playerCount; p++) {
+            this.predictedWins[p] = s.predictedWins[p] >= 0 ? s.predictedWins[p] : estimateWins(p);
+            actualWins[p] = s.actualWins[p];
+        }
+        this.predictedWins[s.seat] = predictedWins;
+        var bonusPoints = s.bonusPoints;
+
+        System.arraycopy(s.trick, 0, trick, 0, s.trickSize);
+        var trickSize = s.trickSize;
+        var leader = s.leaderSeat;
+        var turn = (leader + trickSize) % s.playerCount;
+        var nextMove = firstMove;
+        while (masks[turn] != 0) {
+            if (nextMove < 0) {
+                nextMove = chooseCard(turn, trickSize, rng);
+            }
+            playCard(turn, nextMove, trickSize++);
+            nextMove = -1;
+            turn = (turn + 1) % s.playerCount;
+            if (trickSize == s.playerCount) {
+                var result = TrickEngine.resolve(trick, trickSize);
+                var winner = (leader + TrickEngine.getWinnerIndex(result)) % s.playerCount;
+                actualWins[winner]++;
+                if (winner == s.seat) {
+                    bonusPoints += TrickEngine.getBonusPoints(result);
+                }
+                leader = winner;
+                turn = winner;
+                trickSize = 0;
+            }
+        }
+
+        return getRoundPoints(s.roundIndex, predictedWins, actualWins[s.seat], bonusPoints);
+    }
+
+    /**
+     * Same scoring as the game uses at the end of a round.
+     */
+    static int getRoundPoints(int roundIndex, int predicted, int actual, int bonusPoints) {
+        if (predicted == 0) {
+            return actual == 0 ? roundIndex * 10 : -roundIndex * 10;
+        } else if (predicted == actual) {
+            return 20 * predicted + bonusPoints;
+        }
+        return -10 * Math.abs(actual - predicted);
+    }
+
+    private void deal(RandomGenerator rng) {
+        var s = snapshot;
+        System.arraycopy(s.unseenCards, 0, deck, 0, deck.length);
+        var dealt = 0;
+        for (var p = 0; p < s.playerCount; p++) {
+            var playerCounts = counts[p];
+            if (p == s.seat) {
+                masks[p] = s.hand.getMask();
+                for (var ordinal = 0; ordinal < playerCounts.length; ordinal++) {
+                    playerCounts[ordinal] = (byte) s.hand.getCount(Card.fromOrdinal(ordinal));
+                }
+                continue;
+            }
+            masks[p] = 0;
+            Arrays.fill(playerCounts, (byte) 0);
+            // partial Fisher-Yates shuffle, only the dealt cards are shuffled
+            for (var i = 0; i < s.handSizes[p]; i++) {
+                var j = dealt + rng.nextInt(deck.length - dealt);
+                var ordinal = deck[j];
+                deck[j] = deck[dealt];
+                deck[dealt++] = ordinal;
+                playerCounts[ordinal]++;
+                masks[p] |= 1L << ordinal;
+            }
+        }
+    }
+
+    private int estimateWins(int player) {
+        var wins = 0;
+        for (var bits = masks[player]; bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            if (TrickEngine.getStrength(ordinal) >= STRONG_CARD) {
+                wins += counts[player][ordinal];
+            }
+        }
+        return wins;
+    }
+
+    private int chooseCard(int player, int trickSize, RandomGenerator rng) {
+        var legalMoves = TrickEngine.getLegalMoves(masks[player], trick, trickSize);
+        var needsWins = actualWins[player] < predictedWins[player];
+        if (rng.nextDouble() < RANDOM_MOVE_PROBABILITY) {
+            var bits = legalMoves;
+            for (var i = rng.nextInt(Long.bitCount(legalMoves)); i > 0; i--) {
+                bits &= bits - 1;
+            }
+            return toTrickCode(Long.numberOfTrailingZeros(bits), rng.nextBoolean());
+        }
+
+        var best = -1;
+        var bestStrength = 0;
+        for (var bits = legalMoves; bits != 0; bits &= bits - 1) {
+            // Scary Mary is played as a flag when the player wants to lose the trick
+            var trickCode = toTrickCode(Long.numberOfTrailingZeros(bits), needsWins);
+            var strength = TrickEngine.getStrength(trickCode);
+            if (best < 0 || (needsWins ? strength > bestStrength : strength < bestStrength)) {
+                best = trickCode;
+                bestStrength = strength;
+            }
+        }
+        return best;
+    }
+
+    private static int toTrickCode(int ordinal, boolean scaryMaryAsPirate) {
+        if (ordinal == Card.SCARY_MARY.ordinal()) {
+            return scaryMaryAsPirate ? TrickEngine.SCARY_MARY_AS_PIRATE : TrickEngine.SCARY_MARY_AS_FLAG;
+        }
+        return ordinal;
+    }
+
+    private void playCard(int player, int trickCode, int position) {
+        var ordinal = TrickEngine.getCard(trickCode).ordinal();
+        if (--counts[player][ordinal] == 0) {
+            masks[player] &= ~(1L << ordinal);
+        }
+        trick[position] = trickCode;
+    }
+}
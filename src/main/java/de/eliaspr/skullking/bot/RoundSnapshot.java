@@ -0,0 +1,94 @@
+package de.eliaspr.skullking.bot;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.CardHand;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import java.util.Arrays;
+
+/**
+ * Copy of everything a player can see of the current round, taken from within a command of the
+ * game so that the decision can be computed on another thread. The hands of the other players are
+ * unknown, only the number of cards they hold is part of the snapshot.
+ */
+final class RoundSnapshot {
+
+    private static final int MAX_TRICK_SIZE = 6;
+    private static final int DECK_SIZE;
+
+    static {
+        var size = 0;
+        for (var card : Card.values()) {
+            size += card.instanceCount;
+        }
+        DECK_SIZE = size;
+    }
+
+    final int roundIndex;
+    final int playerCount;
+    final int seat;
+    final int leaderSeat;
+    final int[] trick = new int[MAX_TRICK_SIZE];
+    final int trickSize;
+    final CardHand hand = new CardHand();
+    final int[] handSizes;
+    final int[] predictedWins;
+    final int[] actualWins;
+    final int bonusPoints;
+    final byte[] unseenCards;
+
+    private RoundSnapshot(Game game, Player player) {
+        roundIndex = game.getRoundIndex();
+        playerCount = game.getPlayerCount();
+        handSizes = new int[playerCount];
+        predictedWins = new int[playerCount];
+        actualWins = new int[playerCount];
+
+        var playedCards = game.getPlayedCards();
+        var leader = playedCards.isEmpty() ? game.getNextPlayer() : playedCards.get(0).player;
+        // predictions are only shown to the other players once everyone made theirs
+        var predictionsVisible = game.getGameState() != Game.GameState.PREDICTING_WINS;
+        var seat = 0;
+        var leaderSeat = 0;
+        var index = 0;
+        for (var pl : game.getPlayers()) {
+            if (pl == player) {
+                seat = index;
+            }
+            if (pl == leader) {
+                leaderSeat = index;
+            }
+            handSizes[index] = pl.getCurrentCards().size();
+            predictedWins[index] = pl == player || predictionsVisible ? pl.getPredictedWins() : -1;
+            actualWins[index] = pl.getActualWins();
+            index++;
+        }
+        this.seat = seat;
+        this.leaderSeat = leaderSeat;
+
+        trickSize = playedCards.size();
+        for (var i = 0; i < trickSize; i++) {
+            trick[i] = playedCards.get(i).trickCode;
+        }
+        hand.copyFrom(player.getCurrentCards());
+        bonusPoints = player.getRoundBonusPoints();
+
+        var seen = game.getCardsPlayedInRound();
+        var unseenCount = 0;
+        var unseen = new byte[DECK_SIZE];
+        for (var ordinal = 0; ordinal < Card.getCardTypeCount(); ordinal++) {
+            var card = Card.fromOrdinal(ordinal);
+            for (var i = card.instanceCount - seen.getCount(card) - hand.getCount(card); i > 0; i--) {
+                unseen[unseenCount++] = (byte) ordinal;
+            }
+        }
+        unseenCards = Arrays.copyOf(unseen, unseenCount);
+    }
+
+    /**
+     * Must be called from within a command of the game.
+     */
+    static RoundSnapshot capture(Game game, Player player) {
+        return new RoundSnapshot(game, player);
+    }
+}
@@ -0,0 +1,78 @@
+package de.eliaspr.skullking.game;
+
+import de.eliaspr.skullking.models.PlayerApiModel;
+import de.eliaspr.skullking.server.BinaryProtocol;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds {@link BinaryProtocol#FRAME_STATE} frames. Like {@link GameStateEncoder}, the part which is
+ * the same for all players is encoded only once per state change.
+ */
+final class BinaryGameStateEncoder {
+
+    private final byte[] sharedPrefix;
+
+    BinaryGameStateEncoder(int version, Game.GameState gameState, int roundIndex, PlayerApiModel[] players) {
+        var buffer = new ByteArrayOutputStream(64 + players.length * 24);
+        try (var out = new DataOutputStream(buffer)) {
+            out.writeByte(BinaryProtocol.FRAME_STATE);
+            out.writeInt(version);
+            out.writeByte(gameState.ordinal());
+            out.writeByte(roundIndex);
+            out.writeByte(players.length);
+            for (var player : players) {
+                var name = player.name().getBytes(StandardCharsets.UTF_8);
+                var nameLength = Math.min(name.length, 255);
+                out.writeByte(nameLength);
+                out.write(name, 0, nameLength);
+
+                var flags = 0;
+                if (player.nextTurn()) {
+                    flags |= BinaryProtocol.PLAYER_FLAG_NEXT_TURN;
+                }
+                if (player.predicted() != null && player.actual() != null) {
+                    flags |= BinaryProtocol.PLAYER_FLAG_WINS_VISIBLE;
+                }
+                var playedCard = BinaryProtocol.NO_CARD;
+                if (player.playedCard() != null) {
+                    if (player.playedCard().startsWith(Card.SCARY_MARY.cardID)) {
+                        playedCard = Card.SCARY_MARY.ordinal();
+                        if (player.playedCard().endsWith("pirate")) {
+                            flags |= BinaryProtocol.PLAYER_FLAG_SCARY_MARY_PIRATE;
+                        }
+                    } else {
+                        playedCard = Card.getCard(player.playedCard()).ordinal();
+                    }
+                }
+                out.writeByte(flags);
+                out.writeByte(player.predicted() == null ? 0 : player.predicted());
+                out.writeByte(player.actual() == null ? 0 : player.actual());
+                out.writeShort(player.points());
+                out.writeByte(playedCard);
+            }
+        } catch (IOException e) {
+            // can not happen when writing to a byte array
+            throw new UncheckedIOException(e);
+        }
+        sharedPrefix = buffer.toByteArray();
+    }
+
+    byte[] encodeForPlayer(CardHand cards, boolean gameMaster) {
+        var frame = new byte[sharedPrefix.length + 2 + cards.size()];
+        System.arraycopy(sharedPrefix, 0, frame, 0, sharedPrefix.length);
+        var offset = sharedPrefix.length;
+        frame[offset++] = (byte) (gameMaster ? 1 : 0);
+        frame[offset++] = (byte) cards.size();
+        for (var bits = cards.getMask(); bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            for (var i = cards.getCount(Card.fromOrdinal(ordinal)); i > 0; i--) {
+                frame[offset++] = (byte) ordinal;
+            }
+        }
+        return frame;
+    }
+}
@@ -1,7 +1,6 @@
 package de.eliaspr.skullking.game;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 
 public enum Card {
     SKULL_KING("skullking", -1, CardColor.SPECIAL, 1),
@@ -70,6 +69,25 @@ public enum Card {
     YELLOW_2("g2", 2, CardColor.YELLOW, 1),
     YELLOW_1("g1", 1, CardColor.YELLOW, 1);
 
+    private static final Card[] VALUES = values();
+    private static final Card[] CARD_ID_TABLE;
+    private static final int CARD_ID_HASH_MULTIPLIER;
+    private static final int CARD_ID_HASH_SHIFT;
+
+    static {
+        // search a multiplier for which all card IDs end up in different slots, so that a lookup
+        // needs exactly one hash computation and one comparison
+        var tableBits = 8;
+        var table = new Card[1 << tableBits];
+        var multiplier = 0x9E3779B1;
+        while (!fillCardIdTable(table, multiplier, 32 - tableBits)) {
+            multiplier += 2;
+        }
+        CARD_ID_TABLE = table;
+        CARD_ID_HASH_MULTIPLIER = multiplier;
+        CARD_ID_HASH_SHIFT = 32 - tableBits;
+    }
+
     public final String cardID;
     public final int numericValue;
     public final CardColor cardColor;
@@ -85,25 +103,55 @@ public enum Card {
     }
 
     public static Card getCard(String cardID) {
-        for (var card : values()) {
-            if (card.cardID.equalsIgnoreCase(cardID)) {
-                return card;
+        return getCard(cardID, 0, cardID.length());
+    }
+
+    /**
+     * Case-insensitive lookup of the card ID in the given range of the character sequence, without
+     * creating any intermediate strings.
+     */
+    public static Card getCard(CharSequence text, int start, int end) {
+        var card = CARD_ID_TABLE[cardIdSlot(text, start, end, CARD_ID_HASH_MULTIPLIER, CARD_ID_HASH_SHIFT)];
+        if (card == null || card.cardID.length() != end - start) {
+            return null;
+        }
+        for (var i = 0; i < card.cardID.length(); i++) {
+            if (card.cardID.charAt(i) != Character.toLowerCase(text.charAt(start + i))) {
+                return null;
             }
         }
-        return null;
+        return card;
     }
 
-    public static ArrayList<Card> getCardDeck(boolean shuffled) {
-        var list = new ArrayList<Card>();
-        for (var card : Card.values()) {
-            for (var i = 0; i < card.instanceCount; i++) {
-                list.add(card);
+    /**
+     * Same as {@code values()[ordinal]}, but without copying the values array.
+     */
+    public static Card fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+    }
+
+    public static int getCardTypeCount() {
+        return VALUES.length;
+    }
+
+    private static boolean fillCardIdTable(Card[] table, int multiplier, int shift) {
+        Arrays.fill(table, null);
+        for (var card : VALUES) {
+            var slot = cardIdSlot(card.cardID, 0, card.cardID.length(), multiplier, shift);
+            if (table[slot] != null) {
+                return false;
             }
+            table[slot] = card;
         }
-        if (shuffled) {
-            Collections.shuffle(list, SkullKing.skullKingRNG);
+        return true;
+    }
+
+    private static int cardIdSlot(CharSequence text, int start, int end, int multiplier, int shift) {
+        var hash = 0;
+        for (var i = start; i < end; i++) {
+            hash = hash * 31 + Character.toLowerCase(text.charAt(i));
         }
-        return list;
+        return (hash * multiplier) >>> shift;
     }
 
     public boolean isNumeric() {
@@ -0,0 +1,58 @@
+package de.eliaspr.skullking.game;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Reusable deck containing every card instance once, stored as card ordinals. Shuffling is an
+ * in-place Fisher-Yates shuffle, so shuffling and dealing a round does not allocate anything.
+ */
+final class CardDeck {
+
+    // every shuffle starts from this order, so the order after shuffling only depends on the
+    // random generator and not on the previous rounds (see GameSnapshot and GameReplay)
+    private static final byte[] SORTED_CARDS;
+
+    private final byte[] cards = new byte[SORTED_CARDS.length];
+    private int remaining;
+
+    static {
+        var size = 0;
+        for (var i = 0; i < Card.getCardTypeCount(); i++) {
+            size += Card.fromOrdinal(i).instanceCount;
+        }
+        SORTED_CARDS = new byte[size];
+        var index = 0;
+        for (var i = 0; i < Card.getCardTypeCount(); i++) {
+            for (var j = 0; j < Card.fromOrdinal(i).instanceCount; j++) {
+                SORTED_CARDS[index++] = (byte) i;
+            }
+        }
+    }
+
+    CardDeck() {
+        System.arraycopy(SORTED_CARDS, 0, cards, 0, cards.length);
+        remaining = cards.length;
+    }
+
+    /**
+     * Collects all cards back into the deck and shuffles it.
+     */
+    void shuffle(RandomGenerator rng) {
+        System.arraycopy(SORTED_CARDS, 0, cards, 0, cards.length);
+        for (var i = cards.length - 1; i > 0; i--) {
+            var j = rng.nextInt(i + 1);
+            var tmp = cards[i];
+            cards[i] = cards[j];
+            cards[j] = tmp;
+        }
+        remaining = cards.length;
+    }
+
+    Card drawCard() {
+        return Card.fromOrdinal(cards[--remaining]);
+    }
+
+    int size() {
+        return cards.length;
+    }
+}
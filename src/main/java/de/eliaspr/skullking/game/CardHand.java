@@ -0,0 +1,136 @@
+package de.eliaspr.skullking.game;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Set of cards held by a player. Cards are stored as a bit mask indexed by {@link Card#ordinal()}
+ * plus a count per card type, because some cards (flags, mermaids) exist multiple times. Checking
+ * whether the hand contains a card or any card of a color is a single mask operation. Iterating the
+ * hand yields the cards ordered by their ordinal.
+ */
+public final class CardHand {
+
+    private static final long[] COLOR_MASKS = new long[CardColor.values().length];
+
+    static {
+        for (var i = 0; i < Card.getCardTypeCount(); i++) {
+            var card = Card.fromOrdinal(i);
+            COLOR_MASKS[card.cardColor.ordinal()] |= 1L << i;
+        }
+    }
+
+    private final byte[] counts = new byte[Card.getCardTypeCount()];
+    private long mask;
+    private int size;
+
+    public static long getColorMask(CardColor color) {
+        return COLOR_MASKS[color.ordinal()];
+    }
+
+    public static long getCardMask(Card card) {
+        return 1L << card.ordinal();
+    }
+
+    public void add(Card card) {
+        counts[card.ordinal()]++;
+        mask |= 1L << card.ordinal();
+        size++;
+    }
+
+    public boolean remove(Card card) {
+        var ordinal = card.ordinal();
+        if (counts[ordinal] == 0) {
+            return false;
+        }
+        if (--counts[ordinal] == 0) {
+            mask &= ~(1L << ordinal);
+        }
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(counts, (byte) 0);
+            mask = 0;
+            size = 0;
+        }
+    }
+
+    public boolean contains(Card card) {
+        return (mask & (1L << card.ordinal())) != 0;
+    }
+
+    public boolean hasColor(CardColor color) {
+        return (mask & COLOR_MASKS[color.ordinal()]) != 0;
+    }
+
+    public int getCount(Card card) {
+        return counts[card.ordinal()];
+    }
+
+    /**
+     * Bit mask of all card types in this hand, bit {@code i} represents the card with ordinal
+     * {@code i}.
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void copyFrom(CardHand other) {
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        mask = other.mask;
+        size = other.size;
+    }
+
+    public boolean isSameAs(CardHand other) {
+        return mask == other.mask && size == other.size && Arrays.equals(counts, other.counts);
+    }
+
+    /**
+     * Stores the cards of {@code before} which are missing in {@code after} in this hand. Returns
+     * false if {@code after} contains cards which were not part of {@code before}.
+     */
+    public boolean setToRemovedCards(CardHand before, CardHand after) {
+        if ((after.mask & ~before.mask) != 0) {
+            return false;
+        }
+        clear();
+        for (var bits = before.mask; bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            var removed = before.counts[ordinal] - after.counts[ordinal];
+            if (removed < 0) {
+                clear();
+                return false;
+            }
+            if (removed > 0) {
+                counts[ordinal] = (byte) removed;
+                mask |= 1L << ordinal;
+                size += removed;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calls the consumer once for every card, in the order of the card ordinals.
+     */
+    public void forEach(Consumer<Card> consumer) {
+        for (var bits = mask; bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            var card = Card.fromOrdinal(ordinal);
+            for (var i = 0; i < counts[ordinal]; i++) {
+                consumer.accept(card);
+            }
+        }
+    }
+}
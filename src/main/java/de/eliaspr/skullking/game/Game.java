@@ -1,36 +1,294 @@
 package de.eliaspr.skullking.game;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import de.eliaspr.skullking.models.GameStateApiModel;
+import de.eliaspr.skullking.bot.BotController;
+import de.eliaspr.skullking.journal.GameJournal;
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Histogram;
+import de.eliaspr.skullking.metrics.Metrics;
+import de.eliaspr.skullking.metrics.PlayCardEvent;
+import de.eliaspr.skullking.metrics.StateSendEvent;
+import de.eliaspr.skullking.metrics.TrickEvaluationEvent;
 import de.eliaspr.skullking.models.PlayerApiModel;
+import de.eliaspr.skullking.models.PlayerPatchApiModel;
 import de.eliaspr.skullking.server.PlayerMessenger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Game {
 
     private static final Logger logger = LoggerFactory.getLogger(Game.class);
-    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final Histogram broadcastDuration = Metrics.histogram(
+            "skullking_broadcast_duration_seconds",
+            "Time to encode and enqueue the game state for all players of a game",
+            10,
+            32,
+            1e9);
+    private static final Histogram frameSize = Metrics.histogram(
+            "skullking_frame_size_bytes", "Size of the encoded game state messages", 6, 20, 1);
+    private static final Counter turnTimeouts = Metrics.counter(
+            "skullking_turn_timeouts_total", "Number of bids and turns which were made by the server after a timeout");
+    // one wheel for the turn timers of all games, a turn which times out is noticed within 100 ms
+    private static final TimingWheel turnTimers =
+            new TimingWheel(100, TimeUnit.MILLISECONDS, 1024, "skullking-turn-timers");
+    private static final long NO_TURN = -1;
+
+    private static volatile long bidTimeoutMillis = 0;
+    private static volatile long playTimeoutMillis = 0;
+
+    static {
+        Metrics.gauge("skullking_turn_timers_pending", "Number of running turn timers", turnTimers::getPendingCount);
+    }
 
     public final UUID gameUUID;
     public final int gameCode;
+    public final long seed;
     private final ArrayList<Player> playerList = new ArrayList<>();
     private final ArrayList<PlayedCard> playedCards = new ArrayList<>();
+    private final List<PlayedCard> playedCardsView = Collections.unmodifiableList(playedCards);
+    private final GameMailbox mailbox;
+    private final GameEventSink eventSink;
+    private final boolean headless;
+    private final GameRandom rng;
+    private final CardDeck deck = new CardDeck();
+    private final int[] trickCodes = new int[6];
+    private final CardHand cardsPlayedInRound = new CardHand();
     private Player gameMaster = null;
     private GameState gameState = GameState.WAITING_FOR_START;
     private int roundIndex;
     private int playedTricks;
     private Player nextPlayer;
-    private Runnable continueAction;
+    private ContinueStep continueStep = ContinueStep.NONE;
+    private boolean closed = false;
+    // set while the game is rebuilt from the journal, see restore
+    private boolean restoring = false;
+    private GameJournal journal;
+    private ReplayRecorder replayRecorder;
+    private UUID lastReplayId;
+    private int stateVersion = 0;
+    private PlayerApiModel[] lastPlayerApiModels;
+    private GameState lastBroadcastState;
+    private int lastBroadcastRound;
+    private Player lastBroadcastGameMaster;
+    private TimingWheel.Timeout turnTimeout;
+    // the bid or turn which turnTimeout belongs to, see getCurrentTurn
+    private long timedTurn = NO_TURN;
+    private long turnTimerId;
+    private volatile long lastActivityTime = System.currentTimeMillis();
 
     public Game(int gameCode) {
+        this(null, gameCode, SkullKing.nextGameSeed(), GameEventSink.WEB_SOCKET, new GameMailbox(), false);
+    }
+
+    private Game(
+            UUID gameUUID, int gameCode, long seed, GameEventSink eventSink, GameMailbox mailbox, boolean headless) {
         this.gameCode = gameCode;
-        gameUUID = UUID.randomUUID();
+        this.seed = seed;
+        this.eventSink = eventSink;
+        this.mailbox = mailbox;
+        this.headless = headless;
+        rng = new GameRandom(seed);
+        if (gameUUID != null) {
+            this.gameUUID = gameUUID;
+        } else {
+            this.gameUUID = headless ? new UUID(rng.nextLong(), rng.nextLong()) : UUID.randomUUID();
+        }
+        journal = headless ? null : SkullKing.getJournal();
+    }
+
+    /**
+     * Sets the time players have to predict their wins and to play a card, after which the server
+     * predicts or plays for them. A timeout of zero disables the timer.
+     */
+    public static void configureTurnTimeouts(long bidTimeoutMillis, long playTimeoutMillis) {
+        Game.bidTimeoutMillis = bidTimeoutMillis;
+        Game.playTimeoutMillis = playTimeoutMillis;
+    }
+
+    /**
+     * Creates a game which is not reachable over the network. Commands are applied directly on the
+     * calling thread, its players are not registered globally and all shuffling is derived from
+     * the seed, so playing the same moves on a game with the same seed gives the same results.
+     */
+    public static Game createHeadless(long seed, GameEventSink eventSink) {
+        return new Game(null, 0, seed, eventSink, new GameMailbox(Runnable::run), true);
+    }
+
+    /**
+     * Creates a game which is rebuilt by applying the commands recorded in the journal directly,
+     * without going through the mailbox. Until {@link #finishRestore} is called, nothing is sent to
+     * the players or bots and nothing is recorded again.
+     */
+    static Game restore(UUID gameUUID, int gameCode, long seed) {
+        var game = new Game(gameUUID, gameCode, seed, GameEventSink.WEB_SOCKET, new GameMailbox(), false);
+        game.restoring = true;
+        game.journal = null;
+        return game;
+    }
+
+    /**
+     * Creates a game with the state of the snapshot, see {@link #restore(UUID, int, long)}.
+     */
+    static Game restore(GameSnapshot snapshot) {
+        var game = restore(snapshot.gameUUID(), snapshot.gameCode(), snapshot.seed());
+        game.rng.setState(snapshot.rngState());
+        game.gameState = snapshot.gameState();
+        game.roundIndex = snapshot.roundIndex();
+        game.playedTricks = snapshot.playedTricks();
+        game.continueStep = snapshot.continueStep();
+
+        for (var playerSnapshot : snapshot.players()) {
+            var player = new Player(playerSnapshot.name(), game, playerSnapshot.accessToken(), playerSnapshot.isBot());
+            player.timeJoined = playerSnapshot.timeJoined();
+            player.pointTotal = playerSnapshot.pointTotal();
+            player.predictedWins = playerSnapshot.predictedWins();
+            player.actualWins = playerSnapshot.actualWins();
+            player.roundBonusPoints = playerSnapshot.roundBonusPoints();
+            player.controller = playerSnapshot.computerControlled() ? new BotController() : null;
+            GameSnapshot.addOrdinals(player.currentCards, playerSnapshot.cards());
+            game.playerList.add(player);
+        }
+        game.gameMaster = snapshot.gameMasterIndex() < 0 ? null : game.playerList.get(snapshot.gameMasterIndex());
+        game.nextPlayer = snapshot.nextPlayerIndex() < 0 ? null : game.playerList.get(snapshot.nextPlayerIndex());
+
+        for (var playedCardSnapshot : snapshot.playedCards()) {
+            var trickCode = playedCardSnapshot.trickCode();
+            var playedCard = new PlayedCard(
+                    game.playerList.get(playedCardSnapshot.playerIndex()),
+                    TrickEngine.getCard(trickCode),
+                    TrickEngine.getScaryMaryMode(trickCode));
+            playedCard.bonusPointsReceived = playedCardSnapshot.bonusPointsReceived();
+            game.trickCodes[game.playedCards.size()] = trickCode;
+            game.playedCards.add(playedCard);
+        }
+        GameSnapshot.addOrdinals(game.cardsPlayedInRound, snapshot.cardsPlayedInRound());
+        game.replayRecorder = snapshot.replay().length == 0 ? null : ReplayRecorder.resume(snapshot.replay());
+        return game;
+    }
+
+    /**
+     * Copies the complete state of the game and records in the journal that the snapshot with the
+     * given ID contains all commands of this game up to now.
+     */
+    GameSnapshot captureSnapshot(long snapshotId) {
+        if (journal != null) {
+            journal.snapshotTaken(gameUUID, snapshotId);
+        }
+        var players = new GameSnapshot.PlayerSnapshot[playerList.size()];
+        for (var i = 0; i < players.length; i++) {
+            var player = playerList.get(i);
+            players[i] = new GameSnapshot.PlayerSnapshot(
+                    player.accessToken,
+                    player.name,
+                    player.isBot,
+                    player.isComputerControlled(),
+                    player.timeJoined,
+                    player.pointTotal,
+                    player.predictedWins,
+                    player.actualWins,
+                    player.roundBonusPoints,
+                    GameSnapshot.toOrdinals(player.currentCards));
+        }
+        var snapshotPlayedCards = new GameSnapshot.PlayedCardSnapshot[playedCards.size()];
+        for (var i = 0; i < snapshotPlayedCards.length; i++) {
+            var playedCard = playedCards.get(i);
+            snapshotPlayedCards[i] = new GameSnapshot.PlayedCardSnapshot(
+                    playerList.indexOf(playedCard.player), playedCard.trickCode, playedCard.bonusPointsReceived);
+        }
+        return new GameSnapshot(
+                gameUUID,
+                gameCode,
+                seed,
+                rng.getState(),
+                gameState,
+                roundIndex,
+                playedTricks,
+                continueStep,
+                playerList.indexOf(gameMaster),
+                playerList.indexOf(nextPlayer),
+                players,
+                snapshotPlayedCards,
+                GameSnapshot.toOrdinals(cardsPlayedInRound),
+                replayRecorder == null ? new byte[0] : replayRecorder.toByteArray());
+    }
+
+    /**
+     * Makes a restored game reachable for its players again and lets the bots continue.
+     */
+    void finishRestore(GameJournal journal) {
+        restoring = false;
+        this.journal = journal;
+        for (var player : playerList) {
+            if (!player.isBot) {
+                player.addToGlobalList();
+            }
+        }
+        if (gameState == GameState.FINISHED) {
+            storeReplay();
+        }
+        // the time of a running bid or turn starts over, the deadline was not recorded
+        updateTurnTimer();
+        // nobody is connected yet and players receive the whole state when they connect, so only
+        // the bots need to know that it might be their turn
+        for (var player : playerList) {
+            if (player.controller != null) {
+                player.controller.onGameStateChanged(this, player);
+            }
+        }
+    }
+
+    /**
+     * Queues a command for this game. All commands of a game are applied serially in the order
+     * they were queued, so the command may access the game state without further synchronization.
+     * Every method of this class which reads or changes the game state must only be called from
+     * within such a command.
+     */
+    public void execute(Runnable command) {
+        mailbox.execute(command);
+    }
+
+    /**
+     * Same as {@link #execute(Runnable)}, but gives access to the result of the command.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> command) {
+        return mailbox.submit(command);
+    }
+
+    /**
+     * The number of commands which were queued but not applied yet.
+     */
+    int getPendingCommandCount() {
+        return mailbox.getPendingCommandCount();
+    }
+
+    /**
+     * Records that a player did something in this game, see {@link GameReaper}.
+     */
+    void markActive() {
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void markClosed() {
+        closed = true;
+        cancelTurnTimer();
     }
 
     public int getPlayerCount() {
@@ -52,7 +310,7 @@ public class Game {
 
     public Player getPlayer(UUID playerToken) {
         for (var player : playerList) {
-            if (player.accessToken == playerToken) {
+            if (player.accessToken.equals(playerToken)) {
                 return player;
             }
         }
@@ -63,49 +321,163 @@ public class Game {
         return playerList;
     }
 
+    Player getPlayerByIndex(int index) {
+        return playerList.get(index);
+    }
+
+    /**
+     * Adds a computer controlled player to the lobby. Returns null if the game is full or was
+     * already started.
+     */
+    public Player addBot() {
+        if (closed || isInGame() || getPlayerCount() == 6) {
+            return null;
+        }
+        return addBot(System.currentTimeMillis());
+    }
+
+    Player addBot(long timeJoined) {
+        var botNumber = 1;
+        while (getPlayer("Bot " + botNumber) != null) {
+            botNumber++;
+        }
+        var player = new Player("Bot " + botNumber, this, new UUID(rng.nextLong(), rng.nextLong()), true);
+        player.timeJoined = timeJoined;
+        player.controller = new BotController();
+        if (!headless && !restoring) {
+            logger.info("Adding bot \"" + player.name + "\" to game " + gameCode);
+        }
+        if (journal != null) {
+            journal.botAdded(gameUUID, timeJoined);
+        }
+        playerList.add(player);
+        return player;
+    }
+
     public UUID addPlayer(String playerName) {
-        if (getPlayerCount() == 6 || getPlayer(playerName) != null) {
+        if (closed || getPlayerCount() == 6 || getPlayer(playerName) != null) {
             return null;
         }
-        var player = new Player(playerName, this);
-        player.timeJoined = System.currentTimeMillis();
-        logger.info(
-                "Adding player \"" + playerName + "\" to game " + gameCode + " (token: " + player.accessToken + ")");
+        var accessToken = headless ? new UUID(rng.nextLong(), rng.nextLong()) : UUID.randomUUID();
+        addPlayer(playerName, accessToken, System.currentTimeMillis());
+        return accessToken;
+    }
+
+    void addPlayer(String playerName, UUID accessToken, long timeJoined) {
+        var player = new Player(playerName, this, accessToken, false);
+        player.timeJoined = timeJoined;
+        if (!headless && !restoring) {
+            logger.info("Adding player \"" + playerName + "\" to game " + gameCode + " (token: " + player.accessToken
+                    + ")");
+            player.addToGlobalList();
+        }
+        if (journal != null) {
+            journal.playerJoined(gameUUID, accessToken, playerName, timeJoined);
+        }
         playerList.add(player);
         if (playerList.size() == 1 || gameMaster == null) {
             gameMaster = player;
         }
-        return player.accessToken;
     }
 
     public void removePlayer(Player player) {
+        // the players of a closed game are disconnected by closing it, nothing is left to update
+        if (closed) {
+            return;
+        }
+        if (journal != null) {
+            journal.playerRemoved(gameUUID, player.accessToken);
+        }
         if (gameState == GameState.WAITING_FOR_START || gameState == GameState.FINISHED) {
             player.forceDisconnect();
             playerList.remove(player);
             checkGameMaster();
             player.removeFromGlobalList();
             broadcastGameState();
+        } else if (player.controller == null) {
+            // a bot keeps playing for the player until they reconnect
+            player.controller = new BotController();
+            var previousGameMaster = gameMaster;
+            checkGameMaster();
+            if (gameMaster != previousGameMaster) {
+                // the new game master needs the full state to see the start and continue buttons
+                broadcastGameState();
+            } else if (!restoring) {
+                player.controller.onGameStateChanged(this, player);
+            }
         }
 
-        if (getConnectedPlayerCount() == 0) {
+        // while restoring nobody is connected, closing is recorded separately
+        if (!restoring && getConnectedPlayerCount() == 0) {
             SkullKing.closeGame(this);
         }
     }
 
+    /**
+     * Called when a player connects, a bot which took over for the player stops playing.
+     */
+    void takeBackControl(Player player) {
+        player.controller = null;
+        if (journal != null) {
+            journal.playerConnected(gameUUID, player.accessToken);
+        }
+    }
+
     private void checkGameMaster() {
-        if (!playerList.contains(gameMaster)) {
-            if (playerList.isEmpty()) {
-                gameMaster = null;
-            } else {
-                gameMaster = playerList.get(0);
+        if (gameMaster != null && playerList.contains(gameMaster) && !gameMaster.isComputerControlled()) {
+            return;
+        }
+        // prefer players which are controlled by a client, bots can not start or continue the game
+        for (var player : playerList) {
+            if (!player.isComputerControlled()) {
+                gameMaster = player;
+                return;
             }
         }
+        if (!playerList.contains(gameMaster)) {
+            gameMaster = playerList.isEmpty() ? null : playerList.get(0);
+        }
     }
 
     public Player getGameMaster() {
         return gameMaster;
     }
 
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    public int getRoundIndex() {
+        return roundIndex;
+    }
+
+    public Player getNextPlayer() {
+        return nextPlayer;
+    }
+
+    /**
+     * Cards of the current trick in the order they were played.
+     */
+    public List<PlayedCard> getPlayedCards() {
+        return playedCardsView;
+    }
+
+    /**
+     * All cards which were played in the current round so far, including the current trick. Must
+     * not be modified.
+     */
+    public CardHand getCardsPlayedInRound() {
+        return cardsPlayedInRound;
+    }
+
+    /**
+     * Returns the mask of all card types in the player's hand which may be played on the current
+     * trick, see {@link CardHand#getMask()}.
+     */
+    public long getLegalMoves(Player player) {
+        return TrickEngine.getLegalMoves(player.currentCards.getMask(), trickCodes, playedCards.size());
+    }
+
     public boolean isInGame() {
         return !(gameState == GameState.WAITING_FOR_START || gameState == GameState.FINISHED);
     }
@@ -114,21 +486,35 @@ public class Game {
         if (playerList.size() < 2) {
             return;
         }
+        if (journal != null) {
+            journal.gameStarted(gameUUID);
+        }
         playerList.sort(Comparator.comparingLong(Player::getTimeJoined));
         for (var player : playerList) {
             player.pointTotal = 0;
         }
-        nextPlayer = playerList.get(SkullKing.skullKingRNG.nextInt(playerList.size()));
+        var replaySeed = rng.getState();
+        nextPlayer = playerList.get(rng.nextInt(playerList.size()));
+        replayRecorder = new ReplayRecorder(replaySeed, playerList, nextPlayer);
         prepareRound(1);
         broadcastGameState();
     }
 
+    /**
+     * Starts a headless game like the one recorded with the given seed, see {@link GameReplay}.
+     */
+    void startFromSeed(long seed) {
+        rng.setState(seed);
+        resetLobbyToNewGame();
+    }
+
     private void prepareRound(int roundIndex) {
         gameState = GameState.PREDICTING_WINS;
 
         this.roundIndex = roundIndex;
         this.playedTricks = 0;
         playedCards.clear();
+        cardsPlayedInRound.clear();
 
         for (var player : playerList) {
             player.predictedWins = -1;
@@ -137,25 +523,28 @@ public class Game {
         }
 
         shuffleCards();
+        if (replayRecorder != null) {
+            replayRecorder.roundDealt(playerList);
+        }
     }
 
     private void shuffleCards() {
-        var cards = Card.getCardDeck(true);
+        deck.shuffle(rng);
         for (var player : playerList) {
             player.currentCards.clear();
         }
         for (var i = 1; i <= roundIndex; i++) {
             for (var player : playerList) {
-                var j = cards.size() - 1;
-                var next = cards.get(j);
-                cards.remove(j);
-                player.currentCards.add(next);
+                player.currentCards.add(deck.drawCard());
             }
         }
     }
 
     public void notifyPredictedWins(Player player, int numPredicted) {
         if (gameState == GameState.PREDICTING_WINS) {
+            if (journal != null) {
+                journal.winsPredicted(gameUUID, player.accessToken, numPredicted);
+            }
             player.predictedWins = numPredicted;
 
             var playersFinished = 0;
@@ -165,6 +554,9 @@ public class Game {
                 }
             }
             if (playersFinished == playerList.size()) {
+                if (replayRecorder != null) {
+                    replayRecorder.winsPredicted(playerList);
+                }
                 gameState = GameState.PLAYING_CARDS;
                 broadcastGameState();
             }
@@ -173,72 +565,39 @@ public class Game {
 
     public void notifyPlayCard(Player player, Card card, ScaryMaryMode scaryMaryMode) {
         if (gameState == GameState.PLAYING_CARDS && player == nextPlayer) {
-            var doesPlayerHaveCard = false;
-            for (var playerCard : player.currentCards) {
-                if (playerCard == card) {
-                    doesPlayerHaveCard = true;
-                    break;
-                }
+            if (!player.currentCards.contains(card)) {
+                return;
             }
-            if (!doesPlayerHaveCard) {
+            if (card == Card.SCARY_MARY && scaryMaryMode == null) {
+                // Scary Mary must always be played either as a flag or as a pirate
                 return;
             }
 
+            var event = new PlayCardEvent();
+            event.start();
             var playedCard = new PlayedCard(player, card, scaryMaryMode);
             playCard(playedCard);
+            event.finish(gameCode, card.cardID);
         }
     }
 
     private void playCard(PlayedCard playedCard) {
-        boolean isPlayAllowed;
-        var card = playedCard.card;
-        if (card == Card.FLAG
-                || card.isPirate
-                || card == Card.SKULL_KING
-                || card == Card.SCARY_MARY
-                || card == Card.MERMAID) {
-            isPlayAllowed = true;
-        } else {
-            CardColor forcedColor = null;
-            for (var previous : playedCards) {
-                if (previous.isFlag()) {
-                    continue;
-                }
-                forcedColor = previous.card.cardColor;
-                break;
-            }
-            if (forcedColor == null || !forcedColor.isActualColor) {
-                isPlayAllowed = true;
-            } else {
-                if (playedCard.card.cardColor == forcedColor) {
-                    isPlayAllowed = true;
-                } else if (playedCard.card.cardColor == CardColor.BLACK) {
-                    isPlayAllowed = true;
-                } else {
-                    var doesPlayerHaveColor = false;
-                    for (var playerCard : playedCard.player.currentCards) {
-                        if (playerCard.cardColor == forcedColor) {
-                            doesPlayerHaveColor = true;
-                            break;
-                        }
-                    }
-                    isPlayAllowed = !doesPlayerHaveColor;
-                }
-            }
-        }
-        if (!isPlayAllowed) {
+        var hand = playedCard.player.currentCards.getMask();
+        if (!TrickEngine.isLegalMove(playedCard.card, hand, trickCodes, playedCards.size())) {
             return;
         }
+        if (journal != null) {
+            journal.cardPlayed(gameUUID, playedCard.player.accessToken, playedCard.trickCode);
+        }
+        if (replayRecorder != null) {
+            replayRecorder.cardPlayed(playedCard.trickCode);
+        }
 
+        trickCodes[playedCards.size()] = playedCard.trickCode;
         playedCards.add(playedCard);
+        cardsPlayedInRound.add(playedCard.card);
 
-        var player1 = playedCard.player;
-        for (var i = 0; i < player1.currentCards.size(); i++) {
-            if (player1.currentCards.get(i) == playedCard.card) {
-                player1.currentCards.remove(i);
-                break;
-            }
-        }
+        playedCard.player.currentCards.remove(playedCard.card);
 
         var playerIndex = playerList.indexOf(nextPlayer);
         playerIndex++;
@@ -248,7 +607,10 @@ public class Game {
         nextPlayer = playerList.get(playerIndex);
 
         if (playedCards.size() == playerList.size()) {
+            var event = new TrickEvaluationEvent();
+            event.start();
             var winningCard = getWinningCard();
+            event.finish(gameCode, playedCard.card.cardID);
             if (winningCard == null) {
                 winningCard = playedCards.get(0);
             }
@@ -257,6 +619,7 @@ public class Game {
             winningPlayer.actualWins++;
             winningPlayer.roundBonusPoints += winningCard.bonusPointsReceived;
             nextPlayer = winningPlayer;
+            eventSink.onTrickCompleted(this, winningCard);
 
             if ((playedTricks + 1) >= roundIndex) {
                 // this was the last trick in this round
@@ -284,22 +647,9 @@ public class Game {
                     player.roundBonusPoints = 0;
                 }
 
-                waitForContinue(() -> {
-                    playedCards.clear();
-                    if (roundIndex == 10) {
-                        onGameFinished();
-                    } else {
-                        prepareRound(roundIndex + 1);
-                        broadcastGameState();
-                    }
-                });
+                waitForContinue(ContinueStep.NEXT_ROUND);
             } else {
-                waitForContinue(() -> {
-                    playedTricks++;
-                    playedCards.clear();
-                    gameState = GameState.PLAYING_CARDS;
-                    broadcastGameState();
-                });
+                waitForContinue(ContinueStep.NEXT_TRICK);
             }
         } else {
             broadcastGameState();
@@ -308,151 +658,232 @@ public class Game {
 
     private void onGameFinished() {
         this.gameState = GameState.FINISHED;
+        if (!headless) {
+            storeReplay();
+        }
         broadcastGameState();
+        eventSink.onGameFinished(this);
+    }
+
+    private void storeReplay() {
+        if (replayRecorder != null) {
+            lastReplayId = SkullKing.storeReplay(replayRecorder.toByteArray());
+        }
+    }
+
+    /**
+     * The replay of the game if it is finished, otherwise null. See {@link GameReplay}.
+     */
+    public byte[] getReplay() {
+        return gameState == GameState.FINISHED && replayRecorder != null ? replayRecorder.toByteArray() : null;
+    }
+
+    /**
+     * ID of the replay of the last game finished in this lobby, or null if there is none.
+     */
+    public UUID getLastReplayId() {
+        return lastReplayId;
     }
 
     private PlayedCard getWinningCard() {
         if (playedCards.isEmpty()) {
             return null;
         }
+        var result = TrickEngine.resolve(trickCodes, playedCards.size());
+        var winningCard = playedCards.get(TrickEngine.getWinnerIndex(result));
+        winningCard.bonusPointsReceived += TrickEngine.getBonusPoints(result);
+        return winningCard;
+    }
 
-        var skullKing = wasCardPlayed(Card.SKULL_KING);
-        if (skullKing != null) {
-            var firstMermaid = wasCardPlayed(Card.MERMAID);
-            if (firstMermaid != null) {
-                firstMermaid.bonusPointsReceived += 50;
-                return firstMermaid;
-            } else {
-                var pirateCount = 0;
-                for (var playedCard : playedCards) {
-                    if (playedCard.isPirate()) {
-                        pirateCount++;
+    private void waitForContinue(ContinueStep step) {
+        gameState = GameState.WAITING_FOR_CONTINUE;
+        continueStep = step;
+        broadcastGameState();
+    }
+
+    public void requestGameContinue() {
+        // rely on continueStep to change the gameState
+        if (gameState == GameState.WAITING_FOR_CONTINUE) {
+            if (journal != null) {
+                journal.gameContinued(gameUUID);
+            }
+            var step = continueStep;
+            continueStep = ContinueStep.NONE;
+            switch (step) {
+                case NEXT_TRICK -> {
+                    playedTricks++;
+                    playedCards.clear();
+                    gameState = GameState.PLAYING_CARDS;
+                    broadcastGameState();
+                }
+                case NEXT_ROUND -> {
+                    playedCards.clear();
+                    if (roundIndex == 10) {
+                        onGameFinished();
+                    } else {
+                        prepareRound(roundIndex + 1);
+                        broadcastGameState();
                     }
                 }
-                skullKing.bonusPointsReceived = pirateCount * 30;
-                return skullKing;
+                default -> {}
             }
         }
+    }
 
-        PlayedCard winningCard = null;
-        CardColor acceptedColor = null;
-        for (var next : playedCards) {
-            if (winningCard == null) {
-                winningCard = next;
-                if (!winningCard.isFlag()) {
-                    acceptedColor = winningCard.card.cardColor;
-                }
-            } else {
-                // a flag in 2nd or later position can never win
-                if (next.isFlag()) {
-                    continue;
-                }
+    /**
+     * Notifies the event sink and all computer controlled players about a state change, for games
+     * created by the server this sends the new state to all players.
+     */
+    public void broadcastGameState() {
+        if (restoring) {
+            return;
+        }
+        var turnTimerStarted = updateTurnTimer();
+        eventSink.onGameStateChanged(this);
+        if (turnTimerStarted) {
+            for (var player : playerList) {
+                sendTurnTimer(player);
+            }
+        }
+        for (var player : playerList) {
+            if (player.controller != null) {
+                player.controller.onGameStateChanged(this, player);
+            }
+        }
+    }
 
-                // when the best card is already a pirate, no other card can win
-                // because the cases where a skull was played are previously handled
-                if (winningCard.isPirate()) {
-                    continue;
-                }
+    /**
+     * Sends the current game state to all players. Players which received the previous version
+     * only get a {@link de.eliaspr.skullking.models.GameStatePatchApiModel} with the changes,
+     * everyone else (and everyone after a structural change like a new round) gets a full snapshot.
+     * When nothing changed, only players without an up-to-date snapshot receive a message.
+     */
+    void sendGameStateToPlayers() {
+        var startTime = System.nanoTime();
+        var playerApiModels = getPlayerApiModels();
+        var playerPatches = getPlayerPatches(playerApiModels);
 
-                // when a pirate is played, and the highest previous card is not a pirate,
-                // the next pirate will always win
-                if (next.isPirate()) {
-                    winningCard = next;
+        var hasChanged = playerPatches == null || playerPatches.length > 0;
+        for (var i = 0; !hasChanged && i < playerList.size(); i++) {
+            hasChanged = playerList.get(i).haveCardsChangedSinceLastState();
+        }
+        if (hasChanged) {
+            stateVersion++;
+            lastPlayerApiModels = playerApiModels;
+            lastBroadcastState = gameState;
+            lastBroadcastRound = roundIndex;
+            lastBroadcastGameMaster = gameMaster;
+        }
+
+        GameStateEncoder snapshotEncoder = null;
+        GameStateEncoder patchEncoder = null;
+        BinaryGameStateEncoder binaryEncoder = null;
+        try {
+            for (var player : playerList) {
+                if (player.sentStateVersion == stateVersion) {
                     continue;
                 }
 
-                // when a mermaid is played, it will always win, as long as the previous
-                // highest card is a numeric card
-                if (next.card == Card.MERMAID) {
-                    if (winningCard.card.isNumeric()) {
-                        winningCard = next;
-                        continue;
+                var event = new StateSendEvent();
+                event.start();
+                if (player.binaryProtocol) {
+                    if (binaryEncoder == null) {
+                        binaryEncoder =
+                                new BinaryGameStateEncoder(stateVersion, gameState, roundIndex, playerApiModels);
                     }
+                    var frame = binaryEncoder.encodeForPlayer(player.currentCards, player == gameMaster);
+                    frameSize.record(frame.length);
+                    player.markStateSent(stateVersion);
+                    PlayerMessenger.sendBinaryGameState(player, frame);
+                    event.playerName = player.name;
+                    event.bytes = frame.length;
+                    event.finish(gameCode, "binary");
+                    continue;
                 }
 
-                // all numeric cards will always lose against a mermaid/pirate
-                if (winningCard.card != Card.MERMAID && !winningCard.isPirate()) {
-                    boolean doesNextCardWin;
-
-                    if (next.card.cardColor == CardColor.BLACK) {
-                        if (winningCard.card.cardColor == CardColor.BLACK) {
-                            doesNextCardWin = next.card.numericValue > winningCard.card.numericValue;
-                        } else {
-                            doesNextCardWin = true;
-                        }
-                    } else {
-                        if (acceptedColor == null) {
-                            doesNextCardWin = true;
-                        } else if (next.card.cardColor == acceptedColor) {
-                            doesNextCardWin = next.card.numericValue > winningCard.card.numericValue;
-                        } else {
-                            doesNextCardWin = false;
+                byte[] message = null;
+                // a player with pending messages gets a snapshot, which replaces those messages
+                var canSendPatch = playerPatches != null
+                        && player.sentStateVersion == stateVersion - 1
+                        && PlayerMessenger.getQueueDepth(player) == 0;
+                var isPatch = false;
+                if (canSendPatch) {
+                    var removedCards = player.getCardsRemovedSinceLastState();
+                    if (removedCards != null) {
+                        if (patchEncoder == null) {
+                            patchEncoder = GameStateEncoder.patch(stateVersion, playerPatches);
                         }
+                        message = patchEncoder.encodeForPlayer(removedCards, false);
+                        isPatch = true;
                     }
-
-                    if (doesNextCardWin) {
-                        winningCard = next;
-                        if (acceptedColor == null || next.card.cardColor == CardColor.BLACK) {
-                            acceptedColor = next.card.cardColor;
-                        }
+                }
+                if (message == null) {
+                    if (snapshotEncoder == null) {
+                        snapshotEncoder = GameStateEncoder.snapshot(
+                                stateVersion, gameState.toString(), roundIndex, playerApiModels);
                     }
+                    message = snapshotEncoder.encodeForPlayer(player.currentCards, player == gameMaster);
                 }
-            }
-        }
-        return winningCard;
-    }
 
-    private PlayedCard wasCardPlayed(Card cardType) {
-        for (var playedCard : playedCards) {
-            if (playedCard.card == cardType) {
-                return playedCard;
+                frameSize.record(message.length);
+                player.markStateSent(stateVersion);
+                if (isPatch) {
+                    PlayerMessenger.sendGameStatePatch(player, message);
+                } else {
+                    PlayerMessenger.sendGameStateSnapshot(player, message);
+                }
+                event.playerName = player.name;
+                event.bytes = message.length;
+                event.finish(gameCode, isPatch ? "patch" : "snapshot");
             }
+        } catch (JsonProcessingException e) {
+            logger.error("Could not convert game state to json string", e);
         }
-        return null;
+        broadcastDuration.record(System.nanoTime() - startTime);
     }
 
-    private void waitForContinue(Runnable exec) {
-        gameState = GameState.WAITING_FOR_CONTINUE;
-        continueAction = exec;
-        broadcastGameState();
-    }
+    /**
+     * Compares the given player models with the ones of the previous broadcast. Returns null if the
+     * changes can not be expressed as a patch, which is the case when the game state, round or
+     * player list changed or when a field was reset to null.
+     */
+    private PlayerPatchApiModel[] getPlayerPatches(PlayerApiModel[] playerApiModels) {
+        if (lastPlayerApiModels == null
+                || lastPlayerApiModels.length != playerApiModels.length
+                || lastBroadcastState != gameState
+                || lastBroadcastRound != roundIndex
+                || lastBroadcastGameMaster != gameMaster) {
+            return null;
+        }
 
-    public void requestGameContinue() {
-        // rely on continueAction to change the gameState
-        if (gameState == GameState.WAITING_FOR_CONTINUE) {
-            var old = continueAction;
-            if (continueAction != null) {
-                continueAction.run();
+        var patches = new ArrayList<PlayerPatchApiModel>();
+        for (var i = 0; i < playerApiModels.length; i++) {
+            var previous = lastPlayerApiModels[i];
+            var current = playerApiModels[i];
+            if (!previous.name().equals(current.name())) {
+                return null;
             }
-            // remember the old action, in case that action changes the
-            // continueAction to a new one. in that case we would not
-            // want to reset it directly afterward
-            if (continueAction == old) {
-                continueAction = null;
+            if (previous.equals(current)) {
+                continue;
             }
+            if ((previous.predicted() != null && current.predicted() == null)
+                    || (previous.actual() != null && current.actual() == null)
+                    || (previous.playedCard() != null && current.playedCard() == null)) {
+                return null;
+            }
+            patches.add(new PlayerPatchApiModel(
+                    i,
+                    previous.nextTurn() != current.nextTurn() ? current.nextTurn() : null,
+                    Objects.equals(previous.predicted(), current.predicted()) ? null : current.predicted(),
+                    Objects.equals(previous.actual(), current.actual()) ? null : current.actual(),
+                    previous.points() != current.points() ? current.points() : null,
+                    Objects.equals(previous.playedCard(), current.playedCard()) ? null : current.playedCard()));
         }
+        return patches.toArray(PlayerPatchApiModel[]::new);
     }
 
-    public void broadcastGameState() {
-        var gameStateString = gameState.toString();
-        var playerCount = playerList.size();
-        var playerApiModels = playerList.stream().map(this::getPlayerApiModel).toArray(PlayerApiModel[]::new);
-
-        // copy to temp list, because sendMessageToPlayer deletes disconnected
-        // players which would cause a ConcurrentModificationException
-        var tempPlayers = new ArrayList<Player>(playerList);
-        for (var player : tempPlayers) {
-            var playerCards = player.currentCards.stream().map(x -> x.cardID).toArray(String[]::new);
-            var apiModel = new GameStateApiModel(
-                    gameStateString, roundIndex, playerCount, playerApiModels, playerCards, player == gameMaster);
-
-            try {
-                var jsonString = jsonMapper.writeValueAsString(apiModel);
-                PlayerMessenger.sendMessageToPlayer(player, jsonString);
-            } catch (JsonProcessingException e) {
-                logger.error("Could not convert GameStateApiModel to json string", e);
-            }
-        }
+    PlayerApiModel[] getPlayerApiModels() {
+        return playerList.stream().map(this::getPlayerApiModel).toArray(PlayerApiModel[]::new);
     }
 
     private PlayerApiModel getPlayerApiModel(Player player) {
@@ -480,7 +911,101 @@ public class Game {
                 playedCardString);
     }
 
-    public void playerDisconnected(Player player) {
+    /**
+     * Identifies the bid or turn the game is waiting for, {@link #NO_TURN} if the game is waiting
+     * for neither. All bids of a round share one timer.
+     */
+    private long getCurrentTurn() {
+        if (gameState != GameState.PREDICTING_WINS && gameState != GameState.PLAYING_CARDS) {
+            return NO_TURN;
+        }
+        return (long) gameState.ordinal() << 32 | roundIndex << 16 | playedTricks << 8 | playedCards.size();
+    }
+
+    /**
+     * Starts the timer of the current bid or turn if it is not already running and stops the timer
+     * of the previous one. Returns true if a timer was started.
+     */
+    private boolean updateTurnTimer() {
+        if (headless) {
+            return false;
+        }
+        var turn = getCurrentTurn();
+        if (turn == timedTurn) {
+            return false;
+        }
+        cancelTurnTimer();
+        var timeoutMillis = gameState == GameState.PREDICTING_WINS ? bidTimeoutMillis : playTimeoutMillis;
+        if (turn == NO_TURN || timeoutMillis <= 0) {
+            return false;
+        }
+        timedTurn = turn;
+        var timerId = ++turnTimerId;
+        turnTimeout = turnTimers.schedule(
+                () -> execute(() -> onTurnTimeout(timerId)), timeoutMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private void cancelTurnTimer() {
+        if (turnTimeout != null) {
+            turnTimeout.cancel();
+            turnTimeout = null;
+        }
+        timedTurn = NO_TURN;
+    }
+
+    /**
+     * Predicts zero wins for every player who has not predicted yet, or plays the weakest legal
+     * card for the next player, see {@link TrickEngine#getStrength}.
+     */
+    private void onTurnTimeout(long timerId) {
+        if (closed || turnTimeout == null || timerId != turnTimerId) {
+            return;
+        }
+        turnTimeout = null;
+        turnTimeouts.increment();
+        if (gameState == GameState.PREDICTING_WINS) {
+            for (var player : List.copyOf(playerList)) {
+                if (player.predictedWins < 0) {
+                    logger.info("Player '" + player.name + "' in game " + gameCode
+                            + " did not predict in time, predicting 0 wins");
+                    notifyPredictedWins(player, 0);
+                }
+            }
+        } else if (gameState == GameState.PLAYING_CARDS) {
+            var player = nextPlayer;
+            var legalMoves = getLegalMoves(player);
+            var trickCode = -1;
+            for (var bits = legalMoves; bits != 0; bits &= bits - 1) {
+                var candidate = TrickEngine.getTrickCode(
+                        Card.fromOrdinal(Long.numberOfTrailingZeros(bits)), ScaryMaryMode.PLAY_AS_FLAG);
+                if (trickCode < 0 || TrickEngine.getStrength(candidate) < TrickEngine.getStrength(trickCode)) {
+                    trickCode = candidate;
+                }
+            }
+            var card = TrickEngine.getCard(trickCode);
+            logger.info("Player '" + player.name + "' in game " + gameCode + " did not play in time, playing "
+                    + card.cardID);
+            notifyPlayCard(player, card, TrickEngine.getScaryMaryMode(trickCode));
+        }
+    }
+
+    /**
+     * Sends the time left for the current bid or turn to the player, if a timer is running.
+     */
+    void sendTurnTimer(Player player) {
+        if (turnTimeout != null) {
+            PlayerMessenger.sendTurnTimer(player, turnTimeout.getRemainingMillis());
+        }
+    }
+
+    /**
+     * Called when the connection of the player was closed, see {@link Player#connectionClosed}.
+     */
+    void playerDisconnected(Player player) {
+        if (closed) {
+            return;
+        }
         logger.info("Player '" + player.name + "' was disconnected");
         removePlayer(player);
     }
@@ -491,7 +1016,16 @@ public class Game {
         }
     }
 
-    private enum GameState {
+    /**
+     * What happens when the game master continues the game after a trick.
+     */
+    enum ContinueStep {
+        NONE,
+        NEXT_TRICK,
+        NEXT_ROUND
+    }
+
+    public enum GameState {
         WAITING_FOR_START,
         PREDICTING_WINS,
         WAITING_FOR_CONTINUE,
@@ -0,0 +1,25 @@
+package de.eliaspr.skullking.game;
+
+/**
+ * Receives the events of a {@link Game}. Games created by the server send every state change to
+ * their players, headless games (see {@link Game#createHeadless}) use a sink to collect statistics
+ * instead. All methods are called from within a command of the game.
+ */
+public interface GameEventSink {
+
+    /**
+     * Sends the game state to all players over their web socket sessions.
+     */
+    GameEventSink WEB_SOCKET = Game::sendGameStateToPlayers;
+
+    /**
+     * Ignores all events.
+     */
+    GameEventSink NONE = game -> {};
+
+    void onGameStateChanged(Game game);
+
+    default void onTrickCompleted(Game game, PlayedCard winningCard) {}
+
+    default void onGameFinished(Game game) {}
+}
@@ -0,0 +1,88 @@
+package de.eliaspr.skullking.game;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies all commands of a single game one after another. The mailbox itself never blocks a
+ * thread: commands are queued and drained by a task on the underlying executor, which by default
+ * starts one virtual thread per drain. Different games therefore run in parallel, while the state
+ * of one game is only ever touched by one thread at a time.
+ */
+class GameMailbox implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameMailbox.class);
+    private static final Executor sharedExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // upper bound of commands processed per drain, so that a busy game can not
+    // keep one carrier thread for itself forever
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Executor executor;
+
+    GameMailbox() {
+        this(sharedExecutor);
+    }
+
+    GameMailbox(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        queue.add(command);
+        schedule();
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> command) {
+        var future = new CompletableFuture<T>();
+        execute(() -> {
+            try {
+                future.complete(command.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    int getPendingCommandCount() {
+        return queue.size();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (var i = 0; i < MAX_BATCH_SIZE; i++) {
+                var command = queue.poll();
+                if (command == null) {
+                    break;
+                }
+                try {
+                    command.run();
+                } catch (Exception e) {
+                    logger.error("Game command failed", e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // a command might have been added after the last poll but before the flag was reset
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+}
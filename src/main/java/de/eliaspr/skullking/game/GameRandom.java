@@ -0,0 +1,51 @@
+package de.eliaspr.skullking.game;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * SplitMix64 generator of a single game. Unlike {@link java.util.SplittableRandom}, which uses the
+ * same algorithm, the whole state is a single number which can be stored in a snapshot, so a
+ * restored game continues with exactly the cards it would have drawn otherwise. The static helpers
+ * derive the seeds of the games, in the server as well as in the {@link
+ * de.eliaspr.skullking.simulation.GameSimulator}.
+ */
+public final class GameRandom implements RandomGenerator {
+
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    GameRandom(long state) {
+        this.state = state;
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * The seed of the {@code index}-th game derived from the master seed. Consecutive indices give
+     * unrelated seeds, so games with neighboring indices are dealt independent cards.
+     */
+    public static long deriveSeed(long masterSeed, long index) {
+        return mix64(masterSeed + index * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Finalizer of SplitMix64, turns consecutive numbers into well distributed values.
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
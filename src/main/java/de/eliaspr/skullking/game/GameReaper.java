@@ -0,0 +1,145 @@
+package de.eliaspr.skullking.game;
+
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Metrics;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Closes games which nobody uses anymore, so the number of games and players stays bounded no
+ * matter how long the server runs. A game is idle if none of its players sent a command for the
+ * timeout of its current state, e.g. a lobby which was never opened or a finished game left open in
+ * a tab. Games restored after a restart count as active at the time they were restored. On top of
+ * that, the least recently active games are closed whenever a new game or player would exceed the
+ * configured maximum, and joins are rejected if closing games can't make room.
+ */
+final class GameReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameReaper.class);
+    private static final Counter idleGamesClosed = Metrics.counter(
+            "skullking_games_reclaimed_total", "Number of games closed by the server", "reason", "idle");
+    private static final Counter evictedGames = Metrics.counter(
+            "skullking_games_reclaimed_total", "Number of games closed by the server", "reason", "capacity");
+    private static final Counter rejectedJoins = Metrics.counter(
+            "skullking_joins_rejected_total", "Number of joins rejected because the limits were reached");
+
+    private final long lobbyTimeoutMillis;
+    private final long gameTimeoutMillis;
+    private final long finishedTimeoutMillis;
+    private final int maxGames;
+    private final int maxPlayers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("skullking-reaper").factory());
+
+    /**
+     * Timeouts and limits of zero are disabled.
+     *
+     * @param lobbyTimeoutMillis idle timeout of games which were not started yet
+     * @param gameTimeoutMillis idle timeout of running games
+     * @param finishedTimeoutMillis idle timeout of finished games
+     */
+    GameReaper(
+            long lobbyTimeoutMillis, long gameTimeoutMillis, long finishedTimeoutMillis, int maxGames, int maxPlayers) {
+        this.lobbyTimeoutMillis = lobbyTimeoutMillis;
+        this.gameTimeoutMillis = gameTimeoutMillis;
+        this.finishedTimeoutMillis = finishedTimeoutMillis;
+        this.maxGames = maxGames;
+        this.maxPlayers = maxPlayers;
+    }
+
+    void start(long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::closeIdleGames, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private long getTimeoutMillis(Game.GameState gameState) {
+        return switch (gameState) {
+            case WAITING_FOR_START -> lobbyTimeoutMillis;
+            case FINISHED -> finishedTimeoutMillis;
+            default -> gameTimeoutMillis;
+        };
+    }
+
+    private void closeIdleGames() {
+        var now = System.currentTimeMillis();
+        var minTimeout = Long.MAX_VALUE;
+        for (var timeout : new long[] {lobbyTimeoutMillis, gameTimeoutMillis, finishedTimeoutMillis}) {
+            if (timeout > 0) {
+                minTimeout = Math.min(minTimeout, timeout);
+            }
+        }
+
+        // the state of a game is only checked within its own mailbox, and only for games which
+        // are idle for at least the shortest timeout
+        var checks = new ArrayList<CompletableFuture<Boolean>>();
+        for (var game : SkullKing.getActiveGames()) {
+            if (now - game.getLastActivityTime() >= minTimeout) {
+                checks.add(game.submit(() -> closeIfIdle(game, now)));
+            }
+        }
+        try {
+            var closed = checks.stream().filter(CompletableFuture::join).count();
+            if (closed > 0) {
+                logger.info("Closed " + closed + " idle games, " + SkullKing.getActiveGameCount()
+                        + " games are still active");
+            }
+        } catch (RuntimeException e) {
+            // an exception would also cancel all further runs
+            logger.error("Could not close idle games", e);
+        }
+    }
+
+    private boolean closeIfIdle(Game game, long now) {
+        var timeout = getTimeoutMillis(game.getGameState());
+        if (game.isClosed() || timeout <= 0 || now - game.getLastActivityTime() < timeout) {
+            return false;
+        }
+        idleGamesClosed.increment();
+        SkullKing.closeGame(game);
+        return true;
+    }
+
+    /**
+     * Runs {@code join}, which either adds a new player to {@code joinedGame} or creates a new game
+     * with its first player if {@code joinedGame} is null, after closing the least recently active
+     * other games until the new player and game fit within the limits. Joins are admitted one at a
+     * time, so concurrent joins can't exceed the limits together. Returns null without running
+     * {@code join} if the limits are reached and there is no other game left to close. Must not be
+     * called from within a command of a game, because it waits for the commands closing the other
+     * games.
+     */
+    synchronized <T> T admit(Game joinedGame, Supplier<T> join) {
+        while ((joinedGame == null && maxGames > 0 && SkullKing.getActiveGameCount() >= maxGames)
+                || (maxPlayers > 0 && Player.getActivePlayerCount() >= maxPlayers)) {
+            Game leastRecentlyActive = null;
+            for (var game : SkullKing.getActiveGames()) {
+                if (game != joinedGame
+                        && (leastRecentlyActive == null
+                                || game.getLastActivityTime() < leastRecentlyActive.getLastActivityTime())) {
+                    leastRecentlyActive = game;
+                }
+            }
+            if (leastRecentlyActive == null) {
+                logger.warn("Rejecting a join, the limits are reached and there is no other game to close");
+                rejectedJoins.increment();
+                return null;
+            }
+            var game = leastRecentlyActive;
+            game.submit(() -> {
+                        if (!game.isClosed()) {
+                            logger.info("Closing game " + game.gameCode + " to make room for new players");
+                            evictedGames.increment();
+                            SkullKing.closeGame(game);
+                        }
+                        return null;
+                    })
+                    .join();
+        }
+        return join.get();
+    }
+}
@@ -0,0 +1,216 @@
+package de.eliaspr.skullking.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Compact record of a finished game, from which the whole game can be played again. The replay
+ * consists of the following fields, all numbers are big endian:
+ *
+ * <pre>
+ * int    magic "SKR1"
+ * long   seed, the state of the random generator of the game when it was started
+ * byte   number of players n, followed by n times:
+ *          short + bytes  UTF-8 encoded name
+ *          byte           1 if the player is a bot
+ * byte   index of the player who starts the first round
+ * for each round r from 1 to 10:
+ *   n * r bytes  the cards dealt to each player as card ordinals in ascending order
+ *   n bytes      the number of wins predicted by each player
+ *   n * r bytes  the trick codes (see {@link TrickEngine#getTrickCode}) in the order they were played
+ * </pre>
+ *
+ * The player of each card follows from the rules, so a game of four players fits in about 520
+ * bytes. Replays are identified by a name-based UUID of their content.
+ */
+public final class GameReplay {
+
+    static final int MAGIC = 0x534B5231; // "SKR1"
+    private static final int ROUND_COUNT = 10;
+
+    private final long seed;
+    private final String[] playerNames;
+    private final boolean[] bots;
+    private final int firstPlayerIndex;
+    private final byte[][] deals = new byte[ROUND_COUNT][];
+    private final byte[][] predictedWins = new byte[ROUND_COUNT][];
+    private final byte[][] trickCodes = new byte[ROUND_COUNT][];
+
+    private GameReplay(long seed, String[] playerNames, boolean[] bots, int firstPlayerIndex) {
+        this.seed = seed;
+        this.playerNames = playerNames;
+        this.bots = bots;
+        this.firstPlayerIndex = firstPlayerIndex;
+    }
+
+    public static UUID getId(byte[] replay) {
+        return UUID.nameUUIDFromBytes(replay);
+    }
+
+    /**
+     * Parses a replay, throws an {@link IllegalArgumentException} if it is malformed or incomplete.
+     */
+    public static GameReplay read(byte[] replay) {
+        var data = ByteBuffer.wrap(replay);
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a game replay");
+            }
+            var seed = data.getLong();
+            var playerCount = data.get();
+            if (playerCount < 2 || playerCount > 6) {
+                throw new IllegalArgumentException("Invalid player count " + playerCount);
+            }
+            var playerNames = new String[playerCount];
+            var bots = new boolean[playerCount];
+            for (var i = 0; i < playerCount; i++) {
+                var name = new byte[data.getShort() & 0xFFFF];
+                data.get(name);
+                playerNames[i] = new String(name, StandardCharsets.UTF_8);
+                bots[i] = data.get() != 0;
+            }
+            var firstPlayerIndex = data.get();
+            if (firstPlayerIndex < 0 || firstPlayerIndex >= playerCount) {
+                throw new IllegalArgumentException("Invalid starting player " + firstPlayerIndex);
+            }
+            var gameReplay = new GameReplay(seed, playerNames, bots, firstPlayerIndex);
+
+            for (var round = 1; round <= ROUND_COUNT; round++) {
+                gameReplay.deals[round - 1] = readBytes(data, playerCount * round);
+                gameReplay.predictedWins[round - 1] = readBytes(data, playerCount);
+                gameReplay.trickCodes[round - 1] = readBytes(data, playerCount * round);
+            }
+            if (data.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected data after the last round");
+            }
+            return gameReplay;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Replay is incomplete", e);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer data, int count) {
+        var bytes = new byte[count];
+        data.get(bytes);
+        return bytes;
+    }
+
+    public int getPlayerCount() {
+        return playerNames.length;
+    }
+
+    public String getPlayerName(int index) {
+        return playerNames[index];
+    }
+
+    public boolean isBot(int index) {
+        return bots[index];
+    }
+
+    /**
+     * Plays the recorded game again on a headless game, which sends all state changes to the given
+     * event sink. The game shuffles with the recorded seed, so it deals the same cards unless the
+     * shuffling changed since the replay was recorded, in which case an {@link
+     * IllegalStateException} is thrown. The same happens if a recorded card is rejected. Returns
+     * the finished game.
+     */
+    public Game play(GameEventSink eventSink) {
+        var game = Game.createHeadless(seed, eventSink);
+        var replayed = game.submit(() -> {
+            replay(game);
+            return game;
+        });
+        try {
+            return replayed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void replay(Game game) {
+        var players = new Player[playerNames.length];
+        for (var i = 0; i < playerNames.length; i++) {
+            // bots join as normal players, they must not decide on their own
+            game.addPlayer(playerNames[i], new UUID(0, i), i);
+        }
+        game.getPlayers().toArray(players);
+        game.startFromSeed(seed);
+        if (game.getNextPlayer() != players[firstPlayerIndex]) {
+            throw new IllegalStateException("The replay was recorded with a different starting player");
+        }
+
+        for (var round = 1; round <= ROUND_COUNT; round++) {
+            var deal = deals[round - 1];
+            for (var i = 0; i < players.length; i++) {
+                var dealt = GameSnapshot.toOrdinals(players[i].currentCards);
+                if (!Arrays.equals(dealt, 0, round, deal, i * round, (i + 1) * round)) {
+                    throw new IllegalStateException("The cards dealt in round " + round + " differ from the replay");
+                }
+            }
+            for (var i = 0; i < players.length; i++) {
+                game.notifyPredictedWins(players[i], predictedWins[round - 1][i]);
+            }
+            var codes = trickCodes[round - 1];
+            for (var i = 0; i < codes.length; i++) {
+                var playedCount = game.getCardsPlayedInRound().size();
+                game.notifyPlayCard(
+                        game.getNextPlayer(),
+                        TrickEngine.getCard(codes[i]),
+                        TrickEngine.getScaryMaryMode(codes[i]));
+                if (game.getCardsPlayedInRound().size() == playedCount) {
+                    throw new IllegalStateException("Card " + codes[i] + " of round " + round + " was rejected");
+                }
+                if ((i + 1) % players.length == 0) {
+                    game.requestGameContinue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the recorded game again and writes every game state which would have been sent to the
+     * player with the given index as a full snapshot in JSON, one per line.
+     */
+    public void writeFrames(OutputStream out, int playerIndex) throws IOException {
+        try {
+            play(new FrameWriter(out, playerIndex));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class FrameWriter implements GameEventSink {
+
+        private final OutputStream out;
+        private final int playerIndex;
+        private int version;
+
+        FrameWriter(OutputStream out, int playerIndex) {
+            this.out = out;
+            this.playerIndex = playerIndex;
+        }
+
+        @Override
+        public void onGameStateChanged(Game game) {
+            var player = game.getPlayerByIndex(playerIndex);
+            try {
+                var encoder = GameStateEncoder.snapshot(
+                        ++version, game.getGameState().toString(), game.getRoundIndex(), game.getPlayerApiModels());
+                out.write(encoder.encodeForPlayer(player.currentCards, false));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package de.eliaspr.skullking.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Immutable copy of the complete state of a game, see {@link Game#captureSnapshot}. Players and
+ * played cards refer to players by their index in the player list, cards are stored as card
+ * ordinals or trick codes.
+ */
+record GameSnapshot(
+        UUID gameUUID,
+        int gameCode,
+        long seed,
+        long rngState,
+        Game.GameState gameState,
+        int roundIndex,
+        int playedTricks,
+        Game.ContinueStep continueStep,
+        int gameMasterIndex,
+        int nextPlayerIndex,
+        PlayerSnapshot[] players,
+        PlayedCardSnapshot[] playedCards,
+        byte[] cardsPlayedInRound,
+        byte[] replay) {
+
+    record PlayerSnapshot(
+            UUID accessToken,
+            String name,
+            boolean isBot,
+            boolean computerControlled,
+            long timeJoined,
+            int pointTotal,
+            int predictedWins,
+            int actualWins,
+            int roundBonusPoints,
+            byte[] cards) {}
+
+    record PlayedCardSnapshot(int playerIndex, int trickCode, int bonusPointsReceived) {}
+
+    static byte[] toOrdinals(CardHand hand) {
+        var ordinals = new byte[hand.size()];
+        var index = new int[1];
+        hand.forEach(card -> ordinals[index[0]++] = (byte) card.ordinal());
+        return ordinals;
+    }
+
+    static void addOrdinals(CardHand hand, byte[] ordinals) {
+        for (var ordinal : ordinals) {
+            hand.add(Card.fromOrdinal(ordinal));
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        writeUUID(out, gameUUID);
+        out.writeInt(gameCode);
+        out.writeLong(seed);
+        out.writeLong(rngState);
+        out.writeByte(gameState.ordinal());
+        out.writeByte(roundIndex);
+        out.writeByte(playedTricks);
+        out.writeByte(continueStep.ordinal());
+        out.writeByte(gameMasterIndex);
+        out.writeByte(nextPlayerIndex);
+
+        out.writeByte(players.length);
+        for (var player : players) {
+            writeUUID(out, player.accessToken);
+            out.writeUTF(player.name);
+            out.writeBoolean(player.isBot);
+            out.writeBoolean(player.computerControlled);
+            out.writeLong(player.timeJoined);
+            out.writeInt(player.pointTotal);
+            out.writeByte(player.predictedWins);
+            out.writeByte(player.actualWins);
+            out.writeShort(player.roundBonusPoints);
+            writeBytes(out, player.cards);
+        }
+
+        out.writeByte(playedCards.length);
+        for (var playedCard : playedCards) {
+            out.writeByte(playedCard.playerIndex);
+            out.writeByte(playedCard.trickCode);
+            out.writeShort(playedCard.bonusPointsReceived);
+        }
+        writeBytes(out, cardsPlayedInRound);
+        out.writeInt(replay.length);
+        out.write(replay);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write}. Snapshots of format version 1 contain no replay.
+     */
+    static GameSnapshot read(DataInput in, int formatVersion) throws IOException {
+        var gameUUID = readUUID(in);
+        var gameCode = in.readInt();
+        var seed = in.readLong();
+        var rngState = in.readLong();
+        var gameState = Game.GameState.values()[in.readByte()];
+        var roundIndex = in.readByte();
+        var playedTricks = in.readByte();
+        var continueStep = Game.ContinueStep.values()[in.readByte()];
+        var gameMasterIndex = in.readByte();
+        var nextPlayerIndex = in.readByte();
+
+        var players = new PlayerSnapshot[in.readByte()];
+        for (var i = 0; i < players.length; i++) {
+            players[i] = new PlayerSnapshot(
+                    readUUID(in),
+                    in.readUTF(),
+                    in.readBoolean(),
+                    in.readBoolean(),
+                    in.readLong(),
+                    in.readInt(),
+                    in.readByte(),
+                    in.readByte(),
+                    in.readShort(),
+                    readBytes(in));
+        }
+
+        var playedCards = new PlayedCardSnapshot[in.readByte()];
+        for (var i = 0; i < playedCards.length; i++) {
+            playedCards[i] = new PlayedCardSnapshot(in.readByte(), in.readByte(), in.readShort());
+        }
+        var cardsPlayedInRound = readBytes(in);
+        var replay = new byte[formatVersion >= 2 ? in.readInt() : 0];
+        in.readFully(replay);
+        return new GameSnapshot(
+                gameUUID,
+                gameCode,
+                seed,
+                rngState,
+                gameState,
+                roundIndex,
+                playedTricks,
+                continueStep,
+                gameMasterIndex,
+                nextPlayerIndex,
+                players,
+                playedCards,
+                cardsPlayedInRound,
+                replay);
+    }
+
+    private static void writeUUID(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        var bytes = new byte[in.readUnsignedByte()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
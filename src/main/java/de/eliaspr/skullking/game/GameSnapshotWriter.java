@@ -0,0 +1,146 @@
+package de.eliaspr.skullking.game;
+
+import de.eliaspr.skullking.journal.GameJournal;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically writes a snapshot of all active games to a single file next to the journal. Each
+ * game is copied by a short command in its own mailbox, so games are never paused together and
+ * keep running while the snapshot is encoded and written by the background thread. The file is
+ * written to a temporary file first and renamed afterward, so there always is one complete
+ * snapshot.
+ */
+final class GameSnapshotWriter {
+
+    static final String FILE_NAME = "games.snapshot";
+    static final int FORMAT_VERSION = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(GameSnapshotWriter.class);
+    private static final int MAGIC = 0x534B5331; // "SKS1"
+
+    private final Path directory;
+    private final GameJournal journal;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("skullking-snapshot").factory());
+    private long lastSnapshotId;
+
+    GameSnapshotWriter(Path directory, GameJournal journal) {
+        this.directory = directory;
+        this.journal = journal;
+        lastSnapshotId = journal.getLastSnapshotId();
+    }
+
+    record LoadedSnapshot(long snapshotId, List<GameSnapshot> games) {}
+
+    /**
+     * Reads the snapshot stored in the directory, which contains no games if there is none.
+     */
+    static LoadedSnapshot read(Path directory) throws IOException {
+        var file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return new LoadedSnapshot(-1, List.of());
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a game snapshot: " + file);
+            }
+            var formatVersion = in.readInt();
+            if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + formatVersion + ": " + file);
+            }
+            var snapshotId = in.readLong();
+            var gameCount = in.readInt();
+            var games = new ArrayList<GameSnapshot>(gameCount);
+            for (var i = 0; i < gameCount; i++) {
+                games.add(GameSnapshot.read(in, formatVersion));
+            }
+            return new LoadedSnapshot(snapshotId, games);
+        }
+    }
+
+    void start(long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::writeSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a last snapshot, so that the next start does not need to replay the journal.
+     */
+    void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() {
+        var startTime = System.nanoTime();
+        var snapshotId = ++lastSnapshotId;
+        var captures = new ArrayList<CompletableFuture<GameSnapshot>>();
+        for (var game : SkullKing.getActiveGames()) {
+            captures.add(game.submit(() -> game.isClosed() ? null : game.captureSnapshot(snapshotId)));
+        }
+        var file = directory.resolve(FILE_NAME);
+        var temporary = directory.resolve(FILE_NAME + ".tmp");
+        List<GameSnapshot> games = List.of();
+        long captureTime;
+        try {
+            games = captures.stream()
+                    .map(CompletableFuture::join)
+                    .filter(Objects::nonNull)
+                    .toList();
+            captureTime = System.nanoTime() - startTime;
+
+            // the snapshot records of the games must be durable before the snapshot is,
+            // otherwise recovery would not know where the snapshot belongs in the journal
+            journal.flush();
+            try (var channel = FileChannel.open(
+                    temporary,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(snapshotId);
+                out.writeInt(games.size());
+                for (var game : games) {
+                    game.write(out);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // an exception would also cancel all further snapshots
+            logger.error("Could not write snapshot of " + games.size() + " games", e);
+            return;
+        }
+        journal.snapshotCompleted(snapshotId);
+        logger.info("Wrote snapshot of " + games.size() + " games in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms (capturing took "
+                + TimeUnit.NANOSECONDS.toMillis(captureTime) + " ms)");
+    }
+}
@@ -0,0 +1,100 @@
+package de.eliaspr.skullking.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.eliaspr.skullking.models.GameStateApiModel;
+import de.eliaspr.skullking.models.GameStatePatchApiModel;
+import de.eliaspr.skullking.models.PlayerApiModel;
+import de.eliaspr.skullking.models.PlayerPatchApiModel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the JSON representation of {@link GameStateApiModel} and {@link GameStatePatchApiModel}
+ * for all players of a game. Everything except a list of cards and the game master flag is the
+ * same for all players, so that part is serialized only once per state change and each player's
+ * message is assembled by appending the pre-encoded card IDs to the shared prefix.
+ */
+final class GameStateEncoder {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final byte[][] CARD_ID_JSON = new byte[Card.values().length][];
+    private static final byte[] SUFFIX_GAME_MASTER = utf8("],\"gameMaster\":true}");
+    private static final byte[] SUFFIX_NO_GAME_MASTER = utf8("],\"gameMaster\":false}");
+    private static final byte[] SUFFIX_PATCH = utf8("]}");
+
+    static {
+        for (var card : Card.values()) {
+            CARD_ID_JSON[card.ordinal()] = utf8("\"" + card.cardID + "\"");
+        }
+    }
+
+    private final byte[] sharedPrefix;
+    private final byte[] suffixGameMaster;
+    private final byte[] suffixNoGameMaster;
+
+    private GameStateEncoder(byte[] sharedPrefix, byte[] suffixGameMaster, byte[] suffixNoGameMaster) {
+        this.sharedPrefix = sharedPrefix;
+        this.suffixGameMaster = suffixGameMaster;
+        this.suffixNoGameMaster = suffixNoGameMaster;
+    }
+
+    /**
+     * Encoder for a full {@link GameStateApiModel}, the per-player cards are the player's hand.
+     */
+    static GameStateEncoder snapshot(int version, String gameState, int roundIndex, PlayerApiModel[] players)
+            throws JsonProcessingException {
+        var head = "{\"version\":" + version + ",\"gameState\":\"" + gameState + "\",\"roundIndex\":" + roundIndex
+                + ",\"playerCount\":" + players.length + ",\"players\":";
+        var prefix = concat(utf8(head), jsonMapper.writeValueAsBytes(players), utf8(",\"cards\":["));
+        return new GameStateEncoder(prefix, SUFFIX_GAME_MASTER, SUFFIX_NO_GAME_MASTER);
+    }
+
+    /**
+     * Encoder for a {@link GameStatePatchApiModel}, the per-player cards are the cards which were
+     * removed from the player's hand since the previous version.
+     */
+    static GameStateEncoder patch(int version, PlayerPatchApiModel[] playerPatches) throws JsonProcessingException {
+        var head = "{\"version\":" + version + ",\"patch\":";
+        var prefix = concat(utf8(head), jsonMapper.writeValueAsBytes(playerPatches), utf8(",\"removedCards\":["));
+        return new GameStateEncoder(prefix, SUFFIX_PATCH, SUFFIX_PATCH);
+    }
+
+    byte[] encodeForPlayer(CardHand cards, boolean gameMaster) {
+        var suffix = gameMaster ? suffixGameMaster : suffixNoGameMaster;
+
+        var length = sharedPrefix.length + suffix.length + Math.max(cards.size() - 1, 0);
+        for (var bits = cards.getMask(); bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            length += CARD_ID_JSON[ordinal].length * cards.getCount(Card.fromOrdinal(ordinal));
+        }
+
+        var message = new byte[length];
+        System.arraycopy(sharedPrefix, 0, message, 0, sharedPrefix.length);
+        var offset = sharedPrefix.length;
+        for (var bits = cards.getMask(); bits != 0; bits &= bits - 1) {
+            var ordinal = Long.numberOfTrailingZeros(bits);
+            var cardJson = CARD_ID_JSON[ordinal];
+            for (var i = cards.getCount(Card.fromOrdinal(ordinal)); i > 0; i--) {
+                if (offset > sharedPrefix.length) {
+                    message[offset++] = ',';
+                }
+                System.arraycopy(cardJson, 0, message, offset, cardJson.length);
+                offset += cardJson.length;
+            }
+        }
+        System.arraycopy(suffix, 0, message, offset, suffix.length);
+        return message;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b, byte[] c) {
+        var result = new byte[a.length + b.length + c.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        System.arraycopy(c, 0, result, a.length + b.length, c.length);
+        return result;
+    }
+}
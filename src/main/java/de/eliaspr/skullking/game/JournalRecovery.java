@@ -0,0 +1,132 @@
+package de.eliaspr.skullking.game;
+
+import de.eliaspr.skullking.journal.JournalListener;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rebuilds the running games from the records of the journal. Every record is applied through the
+ * same methods as the original command, so the games draw the same cards from their random
+ * generators and end up in the same state. Games which were closed are dropped again.
+ *
+ * <p>Games contained in the snapshot are restored from the snapshot when their record of that
+ * snapshot is reached, all earlier records of these games are skipped. A game of the snapshot
+ * without such a record was closed and compacted away afterward, so it is not restored.
+ */
+final class JournalRecovery implements JournalListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalRecovery.class);
+
+    private final LinkedHashMap<UUID, Game> games = new LinkedHashMap<>();
+    private final long snapshotId;
+    private final HashMap<UUID, GameSnapshot> pendingSnapshots = new HashMap<>();
+
+    JournalRecovery(long snapshotId, Collection<GameSnapshot> snapshots) {
+        this.snapshotId = snapshotId;
+        for (var snapshot : snapshots) {
+            pendingSnapshots.put(snapshot.gameUUID(), snapshot);
+        }
+    }
+
+    Collection<Game> getGames() {
+        return games.values();
+    }
+
+    @Override
+    public void gameCreated(UUID gameUUID, int gameCode, long seed) {
+        if (pendingSnapshots.containsKey(gameUUID)) {
+            return;
+        }
+        games.put(gameUUID, Game.restore(gameUUID, gameCode, seed));
+    }
+
+    @Override
+    public void playerJoined(UUID gameUUID, UUID accessToken, String name, long timeJoined) {
+        var game = games.get(gameUUID);
+        if (game != null) {
+            game.addPlayer(name, accessToken, timeJoined);
+        }
+    }
+
+    @Override
+    public void botAdded(UUID gameUUID, long timeJoined) {
+        var game = games.get(gameUUID);
+        if (game != null) {
+            game.addBot(timeJoined);
+        }
+    }
+
+    @Override
+    public void playerConnected(UUID gameUUID, UUID accessToken) {
+        withPlayer(gameUUID, accessToken, Game::takeBackControl);
+    }
+
+    @Override
+    public void playerRemoved(UUID gameUUID, UUID accessToken) {
+        withPlayer(gameUUID, accessToken, Game::removePlayer);
+    }
+
+    @Override
+    public void gameStarted(UUID gameUUID) {
+        var game = games.get(gameUUID);
+        if (game != null) {
+            game.requestGameStart();
+        }
+    }
+
+    @Override
+    public void winsPredicted(UUID gameUUID, UUID accessToken, int predictedWins) {
+        withPlayer(gameUUID, accessToken, (game, player) -> game.notifyPredictedWins(player, predictedWins));
+    }
+
+    @Override
+    public void cardPlayed(UUID gameUUID, UUID accessToken, int trickCode) {
+        withPlayer(
+                gameUUID,
+                accessToken,
+                (game, player) -> game.notifyPlayCard(
+                        player, TrickEngine.getCard(trickCode), TrickEngine.getScaryMaryMode(trickCode)));
+    }
+
+    @Override
+    public void gameContinued(UUID gameUUID) {
+        var game = games.get(gameUUID);
+        if (game != null) {
+            game.requestGameContinue();
+        }
+    }
+
+    @Override
+    public void gameClosed(UUID gameUUID) {
+        games.remove(gameUUID);
+    }
+
+    @Override
+    public void snapshotTaken(UUID gameUUID, long snapshotId) {
+        if (snapshotId == this.snapshotId) {
+            var snapshot = pendingSnapshots.remove(gameUUID);
+            if (snapshot != null) {
+                games.put(gameUUID, Game.restore(snapshot));
+            }
+        }
+    }
+
+    private void withPlayer(UUID gameUUID, UUID accessToken, BiConsumer<Game, Player> action) {
+        var game = games.get(gameUUID);
+        if (game == null) {
+            // closed, or waiting for its snapshot record
+            return;
+        }
+        var player = game.getPlayer(accessToken);
+        if (player != null) {
+            action.accept(game, player);
+        } else {
+            logger.warn("Skipping journal record for unknown player " + accessToken + " of game " + gameUUID);
+        }
+    }
+}
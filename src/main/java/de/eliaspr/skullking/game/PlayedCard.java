@@ -5,12 +5,14 @@ public class PlayedCard {
     public final Player player;
     public final Card card;
     public final ScaryMaryMode scaryMaryMode;
+    public final int trickCode;
     int bonusPointsReceived = 0;
 
     public PlayedCard(Player player, Card card, ScaryMaryMode scaryMaryMode) {
         this.player = player;
         this.card = card;
         this.scaryMaryMode = card == Card.SCARY_MARY ? scaryMaryMode : null;
+        this.trickCode = TrickEngine.getTrickCode(card, this.scaryMaryMode);
     }
 
     public boolean isFlag() {
@@ -1,30 +1,43 @@
 package de.eliaspr.skullking.game;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import de.eliaspr.skullking.metrics.Metrics;
+import de.eliaspr.skullking.server.PlayerMessenger;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.web.socket.WebSocketSession;
 
 public class Player {
 
-    private static final HashMap<UUID, Player> activePlayers = new HashMap<>();
+    private static final ConcurrentHashMap<UUID, Player> activePlayers = new ConcurrentHashMap<>();
+
+    static {
+        Metrics.gauge(
+                "skullking_players_active", "Number of human players with a valid access token", activePlayers::size);
+    }
+
     public final String name;
     public final Game game;
     public final UUID accessToken;
-    final ArrayList<Card> currentCards = new ArrayList<>();
-    public WebSocketSession webSocketSession;
+    public final boolean isBot;
+    final CardHand currentCards = new CardHand();
+    private final CardHand sentCards = new CardHand();
+    private final CardHand removedCards = new CardHand();
+    public volatile WebSocketSession webSocketSession;
+    public volatile boolean binaryProtocol;
     long timeJoined;
     int pointTotal = 0;
     int predictedWins = -1;
     int actualWins = 0;
     int roundBonusPoints = 0;
+    int sentStateVersion = -1;
+    PlayerController controller;
 
-    public Player(String name, Game game) {
+    Player(String name, Game game, UUID accessToken, boolean isBot) {
         this.name = name;
         this.game = game;
-        accessToken = UUID.randomUUID();
-        activePlayers.put(accessToken, this);
+        this.accessToken = accessToken;
+        this.isBot = isBot;
     }
 
     public static Player getPlayer(UUID accessToken) {
@@ -35,16 +48,70 @@ public class Player {
         return timeJoined;
     }
 
+    /**
+     * The cards currently held by the player, must not be modified.
+     */
+    public CardHand getCurrentCards() {
+        return currentCards;
+    }
+
+    /**
+     * The number of wins predicted for the current round, or -1 if the player has not predicted
+     * yet.
+     */
+    public int getPredictedWins() {
+        return predictedWins;
+    }
+
+    public int getActualWins() {
+        return actualWins;
+    }
+
+    public int getPointTotal() {
+        return pointTotal;
+    }
+
+    /**
+     * Bonus points received in the current round, they only count if the prediction is met.
+     */
+    public int getRoundBonusPoints() {
+        return roundBonusPoints;
+    }
+
+    /**
+     * Returns the controller making the decisions for this player, or null if the player is
+     * controlled by a client.
+     */
+    public PlayerController getController() {
+        return controller;
+    }
+
+    public boolean isComputerControlled() {
+        return controller != null;
+    }
+
+    public void requestAddBot() {
+        execute(() -> {
+            if (game.getGameMaster() == this && game.addBot() != null) {
+                game.broadcastGameState();
+            }
+        });
+    }
+
     public void requestGameStart() {
-        if (game.getGameMaster() == this) {
-            game.requestGameStart();
-        }
+        execute(() -> {
+            if (game.getGameMaster() == this) {
+                game.requestGameStart();
+            }
+        });
     }
 
     public void requestGameContinue() {
-        if (game.getGameMaster() == this) {
-            game.requestGameContinue();
-        }
+        execute(() -> {
+            if (game.getGameMaster() == this) {
+                game.requestGameContinue();
+            }
+        });
     }
 
     public void notifyPredictedWins(int numPredicted) {
@@ -54,11 +121,79 @@ public class Player {
         if (numPredicted > 10) {
             numPredicted = 10;
         }
-        game.notifyPredictedWins(this, numPredicted);
+        var prediction = numPredicted;
+        execute(() -> game.notifyPredictedWins(this, prediction));
     }
 
     public void notifyPlayCard(Card card, ScaryMaryMode scaryMaryMode) {
-        game.notifyPlayCard(this, card, scaryMaryMode);
+        execute(() -> game.notifyPlayCard(this, card, scaryMaryMode));
+    }
+
+    public void connect(WebSocketSession session, boolean binaryProtocol, String welcomeMessage) {
+        execute(() -> {
+            webSocketSession = session;
+            this.binaryProtocol = binaryProtocol;
+            sentStateVersion = -1;
+            // a player which reconnects takes back control from the bot
+            game.takeBackControl(this);
+            PlayerMessenger.sendWelcomeMessage(this, welcomeMessage);
+            game.broadcastGameState();
+            game.sendTurnTimer(this);
+        });
+    }
+
+    /**
+     * Called when the given web socket session was closed by the client or evicted by the server.
+     */
+    public void connectionClosed(WebSocketSession session) {
+        game.execute(() -> {
+            if (webSocketSession == session) {
+                game.playerDisconnected(this);
+            }
+        });
+    }
+
+    /**
+     * Called by clients which missed a state version, the next broadcast will contain a full
+     * snapshot for this player.
+     */
+    public void requestStateResync() {
+        execute(() -> {
+            sentStateVersion = -1;
+            game.broadcastGameState();
+        });
+    }
+
+    public void disconnect() {
+        execute(() -> {
+            webSocketSession = null;
+            game.removePlayer(this);
+        });
+    }
+
+    /**
+     * Queues a command sent by the player's client, which keeps the game from being closed as idle.
+     */
+    private void execute(Runnable command) {
+        game.markActive();
+        game.execute(command);
+    }
+
+    void markStateSent(int stateVersion) {
+        sentStateVersion = stateVersion;
+        sentCards.copyFrom(currentCards);
+    }
+
+    boolean haveCardsChangedSinceLastState() {
+        return !sentCards.isSameAs(currentCards);
+    }
+
+    /**
+     * Returns the cards which were in the hand when the last state was sent but are no longer in
+     * it, or null if cards were added since then. The returned hand is reused by the next call.
+     */
+    CardHand getCardsRemovedSinceLastState() {
+        return removedCards.setToRemovedCards(sentCards, currentCards) ? removedCards : null;
     }
 
     @Override
@@ -75,6 +210,17 @@ public class Player {
         return Objects.equals(accessToken, player.accessToken);
     }
 
+    /**
+     * The number of players with an access token, in all games.
+     */
+    static int getActivePlayerCount() {
+        return activePlayers.size();
+    }
+
+    void addToGlobalList() {
+        activePlayers.put(accessToken, this);
+    }
+
     public void removeFromGlobalList() {
         activePlayers.remove(accessToken);
     }
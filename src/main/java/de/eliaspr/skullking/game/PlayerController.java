@@ -0,0 +1,14 @@
+package de.eliaspr.skullking.game;
+
+/**
+ * Makes the decisions for a player which is not controlled by a client, e.g. a bot or a player
+ * whose connection was lost during a running game.
+ */
+public interface PlayerController {
+
+    /**
+     * Called from within a command of the game whenever its state changed. Decisions must not be
+     * made in here, they have to be applied later via {@link Game#execute(Runnable)}.
+     */
+    void onGameStateChanged(Game game, Player player);
+}
@@ -0,0 +1,90 @@
+package de.eliaspr.skullking.game;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Appends the events of a running game to a byte array in the format of {@link GameReplay}. The
+ * recorded bytes are part of a {@link GameSnapshot}, so a restored game keeps recording where it
+ * stopped.
+ */
+final class ReplayRecorder {
+
+    private byte[] data;
+    private int length;
+
+    /**
+     * Starts recording a game with the players in their final order. The seed is the state of the
+     * game's random generator before the starting player was chosen.
+     */
+    ReplayRecorder(long seed, List<Player> players, Player firstPlayer) {
+        data = new byte[512];
+        writeInt(GameReplay.MAGIC);
+        writeInt((int) (seed >>> 32));
+        writeInt((int) seed);
+        writeByte(players.size());
+        for (var player : players) {
+            var name = player.name.getBytes(StandardCharsets.UTF_8);
+            writeByte(name.length >>> 8);
+            writeByte(name.length);
+            writeBytes(name);
+            writeByte(player.isBot ? 1 : 0);
+        }
+        writeByte(players.indexOf(firstPlayer));
+    }
+
+    private ReplayRecorder(byte[] recorded) {
+        data = Arrays.copyOf(recorded, Math.max(recorded.length * 2, 512));
+        length = recorded.length;
+    }
+
+    /**
+     * Continues recording after the given bytes, see {@link #toByteArray()}.
+     */
+    static ReplayRecorder resume(byte[] recorded) {
+        return new ReplayRecorder(recorded);
+    }
+
+    void roundDealt(List<Player> players) {
+        for (var player : players) {
+            writeBytes(GameSnapshot.toOrdinals(player.currentCards));
+        }
+    }
+
+    void winsPredicted(List<Player> players) {
+        for (var player : players) {
+            writeByte(player.predictedWins);
+        }
+    }
+
+    void cardPlayed(int trickCode) {
+        writeByte(trickCode);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(data, length);
+    }
+
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeByte(int value) {
+        if (length == data.length) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (length + bytes.length > data.length) {
+            data = Arrays.copyOf(data, Math.max(length * 2, length + bytes.length));
+        }
+        System.arraycopy(bytes, 0, data, length, bytes.length);
+        length += bytes.length;
+    }
+}
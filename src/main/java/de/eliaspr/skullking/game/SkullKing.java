@@ -1,75 +1,273 @@
 package de.eliaspr.skullking.game;
 
-import java.util.HashMap;
-import java.util.Random;
+import de.eliaspr.skullking.journal.GameJournal;
+import de.eliaspr.skullking.metrics.JoinEvent;
+import de.eliaspr.skullking.metrics.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SkullKing {
 
-    public static final Random skullKingRNG;
     private static final Logger logger = LoggerFactory.getLogger(SkullKing.class);
-    private static final HashMap<UUID, Game> activeGames;
+    private static final ConcurrentHashMap<UUID, Game> activeGames;
+    private static final ConcurrentHashMap<Integer, Game> activeGamesByCode;
+    // replays of finished games, the oldest ones are dropped first
+    private static final int MAX_STORED_REPLAYS = 1000;
+    private static final Map<UUID, byte[]> replays = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, byte[]> eldest) {
+            return size() > MAX_STORED_REPLAYS;
+        }
+    });
+    private static final AtomicLong createdGameCount = new AtomicLong();
+    private static volatile long masterSeed = ThreadLocalRandom.current().nextLong();
+    private static volatile GameJournal journal;
+    private static GameSnapshotWriter snapshotWriter;
+    private static volatile GameReaper reaper;
 
     static {
-        skullKingRNG = new Random();
-        activeGames = new HashMap<>();
+        activeGames = new ConcurrentHashMap<>();
+        activeGamesByCode = new ConcurrentHashMap<>();
+        Metrics.gauge("skullking_games_active", "Number of games which are not closed", activeGames::size);
+        Metrics.gauge(
+                "skullking_mailbox_pending_commands",
+                "Number of game commands which were queued but not applied yet",
+                SkullKing::getPendingCommandCount);
     }
 
     private static Game createNewGame() {
-        int gameCode;
+        Game game;
         do {
-            gameCode = skullKingRNG.nextInt(900000) + 100000;
-        } while (getGame(gameCode) != null);
-        var game = new Game(gameCode);
-        logger.info("Creating new game, code: " + gameCode + " id: " + game.gameUUID);
+            // reserving the code with putIfAbsent makes sure that two concurrent
+            // requests can never end up with the same game code
+            game = new Game(ThreadLocalRandom.current().nextInt(100000, 1000000));
+        } while (activeGamesByCode.putIfAbsent(game.gameCode, game) != null);
+        logger.info("Creating new game, code: " + game.gameCode + " id: " + game.gameUUID + " seed: " + game.seed);
+        if (journal != null) {
+            journal.gameCreated(game.gameUUID, game.gameCode, game.seed);
+        }
         activeGames.put(game.gameUUID, game);
         return game;
     }
 
+    /**
+     * Closes games which were idle for longer than the timeout of their state and, whenever a new
+     * game or player would exceed the given limits, the least recently active games. Joins which
+     * would exceed the limits even then are rejected. The idle games are looked for every {@code
+     * intervalSeconds}. Timeouts and limits of zero are disabled.
+     */
+    public static void enableReaper(
+            long lobbyTimeoutMillis,
+            long gameTimeoutMillis,
+            long finishedTimeoutMillis,
+            int maxGames,
+            int maxPlayers,
+            long intervalSeconds) {
+        var newReaper =
+                new GameReaper(lobbyTimeoutMillis, gameTimeoutMillis, finishedTimeoutMillis, maxGames, maxPlayers);
+        newReaper.start(intervalSeconds);
+        reaper = newReaper;
+    }
+
+    /**
+     * Derives the seeds of all games created from now on from the given seed, so that the same
+     * sequence of games is dealt the same cards. By default, the master seed is random.
+     */
+    public static void setMasterSeed(long seed) {
+        masterSeed = seed;
+        createdGameCount.set(0);
+        logger.info("Deriving game seeds from master seed " + seed);
+    }
+
+    /**
+     * Returns the seed for the random generator of a new game. Each game gets its own generator,
+     * so games never contend on a shared one, and the n-th game created after setting the master
+     * seed always gets the same seed.
+     */
+    static long nextGameSeed() {
+        return GameRandom.deriveSeed(masterSeed, createdGameCount.incrementAndGet());
+    }
+
+    /**
+     * Restores all games from the snapshot and the journal in the given directory and records the
+     * commands of all games in the journal from now on. A snapshot of all games is written every
+     * {@code snapshotIntervalSeconds}, if it is greater than zero. Must be called before the
+     * server accepts connections.
+     */
+    public static void enableJournal(
+            Path directory, int segmentSize, long flushIntervalMillis, long snapshotIntervalSeconds)
+            throws IOException {
+        var startTime = System.nanoTime();
+        Files.createDirectories(directory);
+        var snapshot = GameSnapshotWriter.read(directory);
+        var snapshotTime = System.nanoTime() - startTime;
+        var recovery = new JournalRecovery(snapshot.snapshotId(), snapshot.games());
+        var openedJournal = GameJournal.open(directory, segmentSize, flushIntervalMillis, recovery);
+        openedJournal.snapshotCompleted(snapshot.snapshotId());
+        journal = openedJournal;
+
+        var restored = new ArrayList<CompletableFuture<Object>>();
+        for (var game : recovery.getGames()) {
+            activeGames.put(game.gameUUID, game);
+            activeGamesByCode.put(game.gameCode, game);
+            restored.add(game.submit(() -> {
+                game.finishRestore(openedJournal);
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(restored.toArray(CompletableFuture[]::new)).join();
+        logger.info("Restored " + restored.size() + " games in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms (reading the snapshot of "
+                + snapshot.games().size() + " games took " + TimeUnit.NANOSECONDS.toMillis(snapshotTime) + " ms)");
+
+        if (snapshotIntervalSeconds > 0) {
+            snapshotWriter = new GameSnapshotWriter(directory, openedJournal);
+            snapshotWriter.start(snapshotIntervalSeconds);
+        }
+    }
+
+    public static void closeJournal() {
+        var closingJournal = journal;
+        if (closingJournal != null) {
+            if (snapshotWriter != null) {
+                snapshotWriter.close();
+                snapshotWriter = null;
+            }
+            journal = null;
+            closingJournal.close();
+        }
+    }
+
+    private static long getPendingCommandCount() {
+        var total = 0L;
+        for (var game : activeGames.values()) {
+            total += game.getPendingCommandCount();
+        }
+        return total;
+    }
+
+    static Collection<Game> getActiveGames() {
+        return activeGames.values();
+    }
+
+    static GameJournal getJournal() {
+        return journal;
+    }
+
     private static UUID createNewGameAndAddPlayer(String playerName) {
         var game = createNewGame();
-        return game.addPlayer(playerName);
+        return game.submit(() -> game.addPlayer(playerName)).join();
     }
 
+    /**
+     * Must be called from within a command of the given game, see {@link Game#execute(Runnable)}.
+     */
     public static void closeGame(Game game) {
         logger.info("Force-Closing game: " + game.gameCode);
+        game.markClosed();
+        if (journal != null) {
+            journal.gameClosed(game.gameUUID);
+        }
         for (var pl : game.getPlayers()) {
             pl.removeFromGlobalList();
             pl.forceDisconnect();
         }
-        activeGames.remove(game.gameUUID);
+        // only remove the exact instance, the code might already be reused by a new game
+        activeGames.remove(game.gameUUID, game);
+        activeGamesByCode.remove(game.gameCode, game);
     }
 
     public static Game getGame(int gameCode) {
-        for (var game : activeGames.values()) {
-            if (game.gameCode == gameCode) {
-                return game;
-            }
-        }
-        return null;
+        return activeGamesByCode.get(gameCode);
+    }
+
+    public static Game getGame(UUID gameUUID) {
+        return activeGames.get(gameUUID);
+    }
+
+    /**
+     * Keeps the replay of a finished game in memory and returns its ID, see {@link GameReplay}.
+     */
+    static UUID storeReplay(byte[] replay) {
+        var replayId = GameReplay.getId(replay);
+        replays.put(replayId, replay);
+        return replayId;
+    }
+
+    public static byte[] getReplay(UUID replayId) {
+        return replays.get(replayId);
+    }
+
+    public static int getActiveGameCount() {
+        return activeGames.size();
     }
 
     public static UUID getAccessTokenForPlayer(int gameCode, String playerName) {
+        var event = new JoinEvent();
+        event.start();
+        var accessToken = lookUpAccessToken(gameCode, playerName);
+        event.finish(gameCode, playerName);
+        return accessToken;
+    }
+
+    private static UUID lookUpAccessToken(int gameCode, String playerName) {
         var activeGame = getGame(gameCode);
+        var currentReaper = reaper;
         if (activeGame == null) {
-            if (gameCode == 0) {
-                return createNewGameAndAddPlayer(playerName);
-            } else {
+            if (gameCode != 0) {
                 return null;
-            }
-        } else {
-            var player = activeGame.getPlayer(playerName);
-            if (player == null) {
-                if (activeGame.getPlayerCount() < 6 && !activeGame.isInGame()) {
-                    return activeGame.addPlayer(playerName);
-                }
+            } else if (currentReaper == null) {
+                return createNewGameAndAddPlayer(playerName);
             } else {
-                logger.info("Player " + playerName + " is re-joining lobby " + activeGame.gameCode);
-                return player.accessToken;
+                return currentReaper.admit(null, () -> createNewGameAndAddPlayer(playerName));
             }
+        } else if (currentReaper == null) {
+            return activeGame.submit(() -> addOrRejoinPlayer(activeGame, playerName)).join();
+        }
+
+        // only a player who is actually added needs room, rejoining or being turned away must never
+        // close other games
+        var rejoinToken = activeGame.submit(() -> rejoinPlayer(activeGame, playerName)).join();
+        if (rejoinToken != null || !activeGame.submit(() -> canAddPlayer(activeGame, playerName)).join()) {
+            return rejoinToken;
+        }
+        // the game is checked again, it might have changed or been closed while making room
+        return currentReaper.admit(
+                activeGame, () -> activeGame.submit(() -> addOrRejoinPlayer(activeGame, playerName)).join());
+    }
+
+    private static UUID addOrRejoinPlayer(Game game, String playerName) {
+        if (canAddPlayer(game, playerName)) {
+            return game.addPlayer(playerName);
+        }
+        return rejoinPlayer(game, playerName);
+    }
+
+    private static boolean canAddPlayer(Game game, String playerName) {
+        return !game.isClosed() && game.getPlayer(playerName) == null && game.getPlayerCount() < 6 && !game.isInGame();
+    }
+
+    private static UUID rejoinPlayer(Game game, String playerName) {
+        var player = game.getPlayer(playerName);
+        if (player == null || player.isBot || game.isClosed()) {
+            return null;
         }
-        return null;
+        logger.info("Player " + playerName + " is re-joining lobby " + game.gameCode);
+        game.markActive();
+        return player.accessToken;
     }
 }
@@ -0,0 +1,184 @@
+package de.eliaspr.skullking.game;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timing wheel: a ring of buckets which a single thread advances by one bucket per tick,
+ * running the tasks in the current bucket whose deadline has come. Scheduling and cancelling cost
+ * the same no matter how many timeouts are pending, so every game can have its own timeout without
+ * a scheduled task per game. Timeouts fire up to one tick late.
+ *
+ * <p>New timeouts are handed to the wheel thread through a queue and only the wheel thread touches
+ * the buckets. Cancelled timeouts stay in their bucket until the wheel passes it. The tasks are run
+ * on the wheel thread and must only hand the actual work to another thread, like {@link
+ * Game#execute}.
+ */
+final class TimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+    // new timeouts moved into the buckets per tick, so a flood of them can't stall the wheel
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final String threadName;
+    private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final LongAdder pendingCount = new LongAdder();
+    private long startTime;
+    private volatile boolean started = false;
+
+    /**
+     * @param wheelSize the number of buckets, rounded up to a power of two; timeouts further away
+     *     than one turn of the wheel are passed over {@code delay / (tick * wheelSize)} times
+     */
+    TimingWheel(long tick, TimeUnit unit, int wheelSize, String threadName) {
+        this.tickNanos = unit.toNanos(tick);
+        var size = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.threadName = threadName;
+    }
+
+    /**
+     * Runs the task on the wheel thread after the given delay, unless the returned timeout is
+     * cancelled before. The thread is started with the first timeout.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!started) {
+            start();
+        }
+        var timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        pendingCount.increment();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private synchronized void start() {
+        if (!started) {
+            startTime = System.nanoTime();
+            started = true;
+            Thread.ofPlatform().daemon().name(threadName).start(this::run);
+        }
+    }
+
+    /**
+     * The number of timeouts which were neither run nor cancelled yet.
+     */
+    long getPendingCount() {
+        return pendingCount.sum();
+    }
+
+    private void run() {
+        var tick = 0L;
+        while (true) {
+            var tickEnd = startTime + (tick + 1) * tickNanos;
+            for (var now = System.nanoTime(); now < tickEnd; now = System.nanoTime()) {
+                LockSupport.parkNanos(tickEnd - now);
+            }
+            transferNewTimeouts(tick);
+            expireBucket((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts(long tick) {
+        for (var i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            var timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != PENDING) {
+                continue;
+            }
+            var deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            // a deadline which already passed is run with the current tick
+            var bucket = (int) (Math.max(deadlineTick, tick) & mask);
+            timeout.next = buckets[bucket];
+            buckets[bucket] = timeout;
+        }
+    }
+
+    private void expireBucket(int bucket) {
+        Timeout previous = null;
+        var timeout = buckets[bucket];
+        while (timeout != null) {
+            var next = timeout.next;
+            // cancelled timeouts are dropped, they were already subtracted from pendingCount
+            var remove = timeout.state.get() != PENDING || timeout.remainingRounds <= 0;
+            if (remove) {
+                timeout.expire();
+                if (previous == null) {
+                    buckets[bucket] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+            } else {
+                timeout.remainingRounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A scheduled task of the wheel.
+     */
+    final class Timeout {
+
+        private final Runnable task;
+        // nanoseconds since the wheel was started
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // only accessed by the wheel thread
+        private long remainingRounds;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running, if it did not run yet.
+         */
+        void cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                pendingCount.decrement();
+            }
+        }
+
+        /**
+         * The time left until the task is run, zero once the deadline has passed.
+         */
+        long getRemainingMillis() {
+            var remaining = deadline - (System.nanoTime() - startTime);
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            pendingCount.decrement();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // an exception must not stop the wheel and with it all other timeouts
+                logger.error("Timeout task failed", e);
+            }
+        }
+    }
+}
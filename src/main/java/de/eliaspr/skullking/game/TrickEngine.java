@@ -0,0 +1,222 @@
+package de.eliaspr.skullking.game;
+
+/**
+ * Stateless rules engine for single tricks. Played cards are passed as trick codes (see {@link
+ * #getTrickCode}), which are the card ordinal for all cards except Scary Mary, whose code also
+ * contains the mode it was played in. All per-card properties are looked up in precomputed tables,
+ * so resolving a trick is a single pass over the played cards without any allocations.
+ */
+public final class TrickEngine {
+
+    public static final int SCARY_MARY_AS_FLAG = Card.getCardTypeCount();
+    public static final int SCARY_MARY_AS_PIRATE = Card.getCardTypeCount() + 1;
+
+    private static final int KIND_FLAG = 0;
+    private static final int KIND_NUMERIC = 1;
+    private static final int KIND_MERMAID = 2;
+    private static final int KIND_PIRATE = 3;
+    private static final int KIND_SKULL_KING = 4;
+
+    private static final int[] KIND = new int[Card.getCardTypeCount() + 2];
+    private static final int[] VALUE = new int[KIND.length];
+    private static final CardColor[] COLOR = new CardColor[KIND.length];
+    private static final int[] STRENGTH = new int[KIND.length];
+
+    private static final long SPECIAL_CARDS_MASK = CardHand.getColorMask(CardColor.SPECIAL);
+    private static final long BLACK_CARDS_MASK = CardHand.getColorMask(CardColor.BLACK);
+
+    static {
+        for (var i = 0; i < Card.getCardTypeCount(); i++) {
+            var card = Card.fromOrdinal(i);
+            KIND[i] = getKind(card);
+            VALUE[i] = card.numericValue;
+            COLOR[i] = card.cardColor;
+            STRENGTH[i] = getStrength(card);
+        }
+        KIND[SCARY_MARY_AS_FLAG] = KIND_FLAG;
+        KIND[SCARY_MARY_AS_PIRATE] = KIND_PIRATE;
+        VALUE[SCARY_MARY_AS_FLAG] = VALUE[SCARY_MARY_AS_PIRATE] = -1;
+        COLOR[SCARY_MARY_AS_FLAG] = COLOR[SCARY_MARY_AS_PIRATE] = CardColor.SPECIAL;
+        // a flag is given away before Scary Mary, who could still be played as a pirate later
+        STRENGTH[SCARY_MARY_AS_FLAG] = 1;
+        STRENGTH[SCARY_MARY_AS_PIRATE] = STRENGTH[Card.SCARY_MARY.ordinal()] = 90;
+    }
+
+    private TrickEngine() {}
+
+    private static int getKind(Card card) {
+        if (card == Card.SKULL_KING) {
+            return KIND_SKULL_KING;
+        } else if (card.isPirate) {
+            return KIND_PIRATE;
+        } else if (card == Card.MERMAID) {
+            return KIND_MERMAID;
+        } else if (card.isNumeric()) {
+            return KIND_NUMERIC;
+        }
+        // Scary Mary is replaced by one of the two codes containing the mode
+        return KIND_FLAG;
+    }
+
+    private static int getStrength(Card card) {
+        if (card == Card.SKULL_KING) {
+            return 100;
+        } else if (card.isPirate) {
+            return 90;
+        } else if (card == Card.MERMAID) {
+            return 80;
+        } else if (card.cardColor == CardColor.BLACK) {
+            return 60 + card.numericValue;
+        } else if (card.isNumeric()) {
+            return 1 + card.numericValue;
+        }
+        return 0;
+    }
+
+    /**
+     * A rough measure of how likely the card of the trick code is to win a trick, from 0 for a flag
+     * to 100 for the Skull King: flags, Scary Mary as a flag, the colored cards by their number, the
+     * black cards, mermaids, pirates and Scary Mary as a pirate, and the Skull King. It is not part
+     * of the rules, but the computer players and the moves made after a turn timeout all choose
+     * their cards by it. The plain ordinal of Scary Mary has the strength of playing her as a pirate.
+     */
+    public static int getStrength(int trickCode) {
+        return STRENGTH[trickCode];
+    }
+
+    public static int getTrickCode(Card card, ScaryMaryMode scaryMaryMode) {
+        if (card == Card.SCARY_MARY) {
+            return scaryMaryMode == ScaryMaryMode.PLAY_AS_PIRATE ? SCARY_MARY_AS_PIRATE : SCARY_MARY_AS_FLAG;
+        }
+        return card.ordinal();
+    }
+
+    public static Card getCard(int trickCode) {
+        return trickCode >= SCARY_MARY_AS_FLAG ? Card.SCARY_MARY : Card.fromOrdinal(trickCode);
+    }
+
+    /**
+     * The mode Scary Mary was played in, or null if the code belongs to any other card.
+     */
+    public static ScaryMaryMode getScaryMaryMode(int trickCode) {
+        if (trickCode == SCARY_MARY_AS_FLAG) {
+            return ScaryMaryMode.PLAY_AS_FLAG;
+        } else if (trickCode == SCARY_MARY_AS_PIRATE) {
+            return ScaryMaryMode.PLAY_AS_PIRATE;
+        }
+        return null;
+    }
+
+    /**
+     * Determines the winner of the first {@code count} cards of the trick. The result contains the
+     * index of the winning card and the bonus points it receives, use {@link #getWinnerIndex} and
+     * {@link #getBonusPoints} to access them. A trick without any cards is won by index 0.
+     */
+    public static int resolve(int[] trick, int count) {
+        var skullKing = -1;
+        var mermaid = -1;
+        var pirate = -1;
+        var pirateCount = 0;
+        var bestBlack = -1;
+        var bestLead = -1;
+        CardColor leadColor = null;
+
+        for (var i = 0; i < count; i++) {
+            var code = trick[i];
+            var kind = KIND[code];
+            // only the color of the first card which is not a flag matters
+            if (leadColor == null && kind != KIND_FLAG) {
+                leadColor = COLOR[code];
+            }
+
+            switch (kind) {
+                case KIND_SKULL_KING -> {
+                    if (skullKing < 0) {
+                        skullKing = i;
+                    }
+                }
+                case KIND_PIRATE -> {
+                    pirateCount++;
+                    if (pirate < 0) {
+                        pirate = i;
+                    }
+                }
+                case KIND_MERMAID -> {
+                    if (mermaid < 0) {
+                        mermaid = i;
+                    }
+                }
+                case KIND_NUMERIC -> {
+                    var color = COLOR[code];
+                    if (color == CardColor.BLACK) {
+                        if (bestBlack < 0 || VALUE[code] > VALUE[trick[bestBlack]]) {
+                            bestBlack = i;
+                        }
+                    } else if (color == leadColor && (bestLead < 0 || VALUE[code] > VALUE[trick[bestLead]])) {
+                        bestLead = i;
+                    }
+                }
+                default -> {}
+            }
+        }
+
+        if (skullKing >= 0) {
+            // the skull king is only captured by a mermaid, otherwise it captures all pirates
+            return mermaid >= 0 ? result(mermaid, 50) : result(skullKing, pirateCount * 30);
+        }
+        if (pirate >= 0) {
+            return result(pirate, 0);
+        }
+        if (mermaid >= 0) {
+            return result(mermaid, 0);
+        }
+        if (bestBlack >= 0) {
+            return result(bestBlack, 0);
+        }
+        return result(Math.max(bestLead, 0), 0);
+    }
+
+    public static int getWinnerIndex(int result) {
+        return result & 0xFF;
+    }
+
+    public static int getBonusPoints(int result) {
+        return result >>> 8;
+    }
+
+    /**
+     * Returns the mask of all card types of the hand (see {@link CardHand#getMask()}) which may be
+     * played on the first {@code count} cards of the trick.
+     */
+    public static long getLegalMoves(long hand, int[] trick, int count) {
+        var leadColor = getLeadColor(trick, count);
+        if (leadColor == null || !leadColor.isActualColor) {
+            return hand;
+        }
+        var leadMask = CardHand.getColorMask(leadColor);
+        if ((hand & leadMask) == 0) {
+            return hand;
+        }
+        return hand & (leadMask | BLACK_CARDS_MASK | SPECIAL_CARDS_MASK);
+    }
+
+    public static boolean isLegalMove(Card card, long hand, int[] trick, int count) {
+        return (getLegalMoves(hand, trick, count) & CardHand.getCardMask(card)) != 0;
+    }
+
+    /**
+     * Color of the first card which is not a flag, or null if there is no such card.
+     */
+    private static CardColor getLeadColor(int[] trick, int count) {
+        for (var i = 0; i < count; i++) {
+            if (KIND[trick[i]] != KIND_FLAG) {
+                return COLOR[trick[i]];
+            }
+        }
+        return null;
+    }
+
+    private static int result(int winnerIndex, int bonusPoints) {
+        return winnerIndex | (bonusPoints << 8);
+    }
+}
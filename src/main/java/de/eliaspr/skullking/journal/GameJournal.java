@@ -0,0 +1,478 @@
+package de.eliaspr.skullking.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of all accepted game commands, which allows restoring the running games
+ * after the server was restarted or crashed.
+ *
+ * <p>Records are copied into a memory-mapped segment file while the command is applied, so they
+ * survive a crash of the process as soon as the command is done. Writing them to the storage
+ * device is batched: a background thread forces all records appended since its last run once per
+ * flush interval, so a crash of the whole machine loses at most that interval (group commit).
+ *
+ * <p>Whenever a segment is full, all previous segments are compacted into a single file which only
+ * contains the records of games that are still running. Restoring therefore takes time
+ * proportional to the live games, not to all games ever played. Once a snapshot of the games was
+ * written (see {@link #snapshotCompleted}), compacting also drops all records of a game before the
+ * game's {@link #snapshotTaken} record, so only the commands since the snapshot are replayed.
+ */
+public final class GameJournal implements JournalListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameJournal.class);
+
+    private static final byte GAME_CREATED = 1;
+    private static final byte PLAYER_JOINED = 2;
+    private static final byte BOT_ADDED = 3;
+    private static final byte PLAYER_CONNECTED = 4;
+    private static final byte PLAYER_REMOVED = 5;
+    private static final byte GAME_STARTED = 6;
+    private static final byte WINS_PREDICTED = 7;
+    private static final byte CARD_PLAYED = 8;
+    private static final byte GAME_CONTINUED = 9;
+    private static final byte GAME_CLOSED = 10;
+    private static final byte SNAPSHOT_TAKEN = 11;
+
+    // every record starts with the type and the game UUID
+    private static final int RECORD_PREFIX_SIZE = 17;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    // games which were created but not closed, only these are kept when compacting
+    private final HashSet<UUID> liveGames = new HashSet<>();
+    // games contained in each snapshot which was started but not yet completed
+    private final HashMap<Long, HashSet<UUID>> snapshotGames = new HashMap<>();
+    // segments which are no longer written to, oldest first
+    private final ArrayList<JournalSegment> sealedSegments = new ArrayList<>();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("skullking-journal-compaction").factory());
+    private final Thread flushThread;
+    private JournalSegment activeSegment;
+    private long durableSnapshotId = -1;
+    private long lastSnapshotId = -1;
+    private HashSet<UUID> durableSnapshotGames = new HashSet<>();
+    private long compactedSnapshotId = -1;
+    private volatile boolean closed = false;
+
+    private GameJournal(Path directory, int segmentSize, long flushIntervalMillis) {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, MIN_SEGMENT_SIZE);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushIntervalMillis, 1));
+        flushThread = Thread.ofPlatform().daemon().name("skullking-journal-flush").unstarted(this::runFlushLoop);
+    }
+
+    /**
+     * Opens the journal in the given directory. All records which are already stored are passed to
+     * the listener before this method returns, new records are written to a new segment.
+     */
+    public static GameJournal open(Path directory, int segmentSize, long flushIntervalMillis, JournalListener recovery)
+            throws IOException {
+        Files.createDirectories(directory);
+        var journal = new GameJournal(directory, segmentSize, flushIntervalMillis);
+        var nextIndex = journal.replay(recovery);
+        journal.activeSegment = JournalSegment.create(directory, nextIndex, journal.segmentSize);
+        journal.flushThread.start();
+        if (journal.sealedSegments.size() > 1) {
+            journal.compactionExecutor.execute(journal::compact);
+        }
+        return journal;
+    }
+
+    /**
+     * Replays all segments in the order they were written and returns the index for the next
+     * segment. Files which were replaced by a compacted file, but could not be deleted, are
+     * skipped and deleted now.
+     */
+    private long replay(JournalListener listener) throws IOException {
+        var segments = new ArrayList<JournalSegment>();
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var segment = JournalSegment.fromPath(file);
+                if (segment != null) {
+                    segments.add(segment);
+                } else if (file.getFileName().toString().endsWith(".journal.tmp")) {
+                    // unfinished compaction
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        // newest first, a compacted file comes before the last segment it replaces
+        segments.sort(Comparator.comparingLong((JournalSegment s) -> s.lastIndex)
+                .thenComparing(s -> s.compacted)
+                .reversed());
+        var replaced = Long.MAX_VALUE;
+        for (var segment : segments) {
+            if (segment.lastIndex >= replaced) {
+                deleteSegment(segment);
+            } else {
+                sealedSegments.add(segment);
+                replaced = segment.firstIndex;
+            }
+        }
+        sealedSegments.sort(Comparator.comparingLong(s -> s.firstIndex));
+
+        var startTime = System.nanoTime();
+        var recordCount = 0L;
+        for (var segment : sealedSegments) {
+            recordCount += segment.forEachRecord(data -> dispatch(data, listener));
+        }
+        if (recordCount > 0) {
+            logger.info("Replayed " + recordCount + " journal records of " + sealedSegments.size() + " segments in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms, " + liveGames.size()
+                    + " games are still running");
+        }
+        return sealedSegments.isEmpty() ? 0 : sealedSegments.get(sealedSegments.size() - 1).lastIndex + 1;
+    }
+
+    private void dispatch(ByteBuffer data, JournalListener listener) {
+        var type = data.get();
+        var gameUUID = new UUID(data.getLong(), data.getLong());
+        switch (type) {
+            case GAME_CREATED -> {
+                liveGames.add(gameUUID);
+                listener.gameCreated(gameUUID, data.getInt(), data.getLong());
+            }
+            case PLAYER_JOINED -> {
+                var accessToken = readUUID(data);
+                var timeJoined = data.getLong();
+                var name = new byte[data.getShort() & 0xFFFF];
+                data.get(name);
+                listener.playerJoined(gameUUID, accessToken, new String(name, StandardCharsets.UTF_8), timeJoined);
+            }
+            case BOT_ADDED -> listener.botAdded(gameUUID, data.getLong());
+            case PLAYER_CONNECTED -> listener.playerConnected(gameUUID, readUUID(data));
+            case PLAYER_REMOVED -> listener.playerRemoved(gameUUID, readUUID(data));
+            case GAME_STARTED -> listener.gameStarted(gameUUID);
+            case WINS_PREDICTED -> listener.winsPredicted(gameUUID, readUUID(data), data.get());
+            case CARD_PLAYED -> listener.cardPlayed(gameUUID, readUUID(data), data.get());
+            case GAME_CONTINUED -> listener.gameContinued(gameUUID);
+            case GAME_CLOSED -> {
+                liveGames.remove(gameUUID);
+                listener.gameClosed(gameUUID);
+            }
+            case SNAPSHOT_TAKEN -> {
+                var snapshotId = data.getLong();
+                // the creation of the game might have been dropped when compacting
+                liveGames.add(gameUUID);
+                lastSnapshotId = Math.max(lastSnapshotId, snapshotId);
+                snapshotGames.computeIfAbsent(snapshotId, id -> new HashSet<>()).add(gameUUID);
+                listener.snapshotTaken(gameUUID, snapshotId);
+            }
+            default -> logger.warn("Skipping journal record of unknown type " + type);
+        }
+    }
+
+    private static UUID readUUID(ByteBuffer data) {
+        return new UUID(data.getLong(), data.getLong());
+    }
+
+    @Override
+    public void gameCreated(UUID gameUUID, int gameCode, long seed) {
+        synchronized (this) {
+            liveGames.add(gameUUID);
+            begin(GAME_CREATED, gameUUID).putInt(gameCode).putLong(seed);
+            commit();
+        }
+    }
+
+    @Override
+    public void playerJoined(UUID gameUUID, UUID accessToken, String name, long timeJoined) {
+        var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        var nameLength = Math.min(nameBytes.length, MAX_RECORD_SIZE - RECORD_PREFIX_SIZE - 26);
+        synchronized (this) {
+            putUUID(begin(PLAYER_JOINED, gameUUID), accessToken)
+                    .putLong(timeJoined)
+                    .putShort((short) nameLength)
+                    .put(nameBytes, 0, nameLength);
+            commit();
+        }
+    }
+
+    @Override
+    public synchronized void botAdded(UUID gameUUID, long timeJoined) {
+        begin(BOT_ADDED, gameUUID).putLong(timeJoined);
+        commit();
+    }
+
+    @Override
+    public synchronized void playerConnected(UUID gameUUID, UUID accessToken) {
+        putUUID(begin(PLAYER_CONNECTED, gameUUID), accessToken);
+        commit();
+    }
+
+    @Override
+    public synchronized void playerRemoved(UUID gameUUID, UUID accessToken) {
+        putUUID(begin(PLAYER_REMOVED, gameUUID), accessToken);
+        commit();
+    }
+
+    @Override
+    public synchronized void gameStarted(UUID gameUUID) {
+        begin(GAME_STARTED, gameUUID);
+        commit();
+    }
+
+    @Override
+    public synchronized void winsPredicted(UUID gameUUID, UUID accessToken, int predictedWins) {
+        putUUID(begin(WINS_PREDICTED, gameUUID), accessToken).put((byte) predictedWins);
+        commit();
+    }
+
+    @Override
+    public synchronized void cardPlayed(UUID gameUUID, UUID accessToken, int trickCode) {
+        putUUID(begin(CARD_PLAYED, gameUUID), accessToken).put((byte) trickCode);
+        commit();
+    }
+
+    @Override
+    public synchronized void gameContinued(UUID gameUUID) {
+        begin(GAME_CONTINUED, gameUUID);
+        commit();
+    }
+
+    @Override
+    public synchronized void gameClosed(UUID gameUUID) {
+        liveGames.remove(gameUUID);
+        begin(GAME_CLOSED, gameUUID);
+        commit();
+    }
+
+    @Override
+    public synchronized void snapshotTaken(UUID gameUUID, long snapshotId) {
+        lastSnapshotId = Math.max(lastSnapshotId, snapshotId);
+        snapshotGames.computeIfAbsent(snapshotId, id -> new HashSet<>()).add(gameUUID);
+        begin(SNAPSHOT_TAKEN, gameUUID).putLong(snapshotId);
+        commit();
+    }
+
+    /**
+     * Highest snapshot ID of all {@link #snapshotTaken} records, including those of snapshots which
+     * were never completed. New snapshots must use a higher ID.
+     */
+    public synchronized long getLastSnapshotId() {
+        return lastSnapshotId;
+    }
+
+    /**
+     * Called once the snapshot with the given ID is stored durably. The journal must have been
+     * flushed before the snapshot file was written, so that all {@link #snapshotTaken} records of
+     * the snapshot are durable as well. The records which are covered by the snapshot are dropped
+     * by the next compaction.
+     */
+    public void snapshotCompleted(long snapshotId) {
+        synchronized (this) {
+            if (snapshotId <= durableSnapshotId) {
+                return;
+            }
+            durableSnapshotId = snapshotId;
+            durableSnapshotGames = snapshotGames.getOrDefault(snapshotId, new HashSet<>());
+            snapshotGames.keySet().removeIf(id -> id <= snapshotId);
+        }
+        compactionExecutor.execute(this::compact);
+    }
+
+    private ByteBuffer begin(byte type, UUID gameUUID) {
+        record.clear();
+        return putUUID(record.put(type), gameUUID);
+    }
+
+    private static ByteBuffer putUUID(ByteBuffer buffer, UUID uuid) {
+        return buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Appends the record which was written to {@link #record}, starting a new segment if the
+     * current one is full.
+     */
+    private void commit() {
+        if (closed) {
+            return;
+        }
+        record.flip();
+        if (activeSegment.append(record)) {
+            return;
+        }
+        try {
+            var sealed = activeSegment;
+            sealed.force(sealed.getPosition());
+            activeSegment = JournalSegment.create(directory, sealed.lastIndex + 1, segmentSize);
+            sealedSegments.add(sealed);
+            compactionExecutor.execute(this::compact);
+        } catch (IOException e) {
+            // the game continues, but it can not be restored anymore
+            logger.error("Could not create journal segment, journal is closed", e);
+            closed = true;
+            return;
+        }
+        activeSegment.append(record);
+    }
+
+    private void runFlushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(flushIntervalNanos);
+            flush();
+        }
+    }
+
+    /**
+     * Forces all records appended so far to the storage device. The records are only read from
+     * the mapped segment, so appending continues while the segment is forced.
+     */
+    public void flush() {
+        JournalSegment segment;
+        int position;
+        synchronized (this) {
+            segment = activeSegment;
+            position = segment.getPosition();
+        }
+        try {
+            segment.force(position);
+        } catch (UncheckedIOException e) {
+            logger.error("Could not flush journal segment " + segment, e);
+        }
+    }
+
+    /**
+     * Replaces all sealed segments by a single compacted file containing only the records of games
+     * which are still running and which are not covered by the last durable snapshot. The sealed
+     * segments are never written to again, so they can be read without holding the lock. Games
+     * closed during compaction are dropped by the next one.
+     */
+    private void compact() {
+        List<JournalSegment> segments;
+        HashSet<UUID> keep;
+        long snapshotId;
+        HashSet<UUID> snapshotted;
+        synchronized (this) {
+            if (closed
+                    || sealedSegments.isEmpty()
+                    || (sealedSegments.size() < 2 && compactedSnapshotId == durableSnapshotId)) {
+                return;
+            }
+            segments = List.copyOf(sealedSegments);
+            keep = new HashSet<>(liveGames);
+            snapshotId = durableSnapshotId;
+            snapshotted = durableSnapshotGames;
+        }
+        // games of the snapshot whose snapshot record was not reached yet
+        var covered = new HashSet<>(snapshotted);
+
+        var startTime = System.nanoTime();
+        var first = segments.get(0).firstIndex;
+        var last = segments.get(segments.size() - 1).lastIndex;
+        var target = JournalSegment.getCompactedPath(directory, first, last);
+        var temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        var keptRecords = new long[1];
+        try {
+            try (var channel = FileChannel.open(
+                    temporary,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                var header = ByteBuffer.allocate(JournalSegment.HEADER_SIZE);
+                JournalSegment.writeHeader(header);
+                channel.write(header.flip());
+                for (var segment : segments) {
+                    segment.forEachRecord(data -> {
+                        var offset = data.position();
+                        var gameUUID = new UUID(data.getLong(offset + 1), data.getLong(offset + 9));
+                        if (data.get(offset) == SNAPSHOT_TAKEN
+                                && data.getLong(offset + RECORD_PREFIX_SIZE) == snapshotId) {
+                            covered.remove(gameUUID);
+                        }
+                        if (keep.contains(gameUUID) && !covered.contains(gameUUID)) {
+                            writeFully(channel, data.rewind());
+                            keptRecords[0]++;
+                        }
+                    });
+                }
+                channel.force(true);
+            }
+            // a single compacted file which is only compacted again because of a new snapshot is replaced
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Could not compact journal segments " + segments, e);
+            return;
+        }
+
+        synchronized (this) {
+            sealedSegments.removeAll(segments);
+            sealedSegments.add(0, JournalSegment.fromPath(target));
+            compactedSnapshotId = snapshotId;
+        }
+        for (var segment : segments) {
+            if (!segment.path.equals(target)) {
+                deleteSegment(segment);
+            }
+        }
+        logger.info("Compacted " + segments.size() + " journal segments to " + keptRecords[0] + " records of "
+                + keep.size() + " running games in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+                + " ms");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) {
+        try {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteSegment(JournalSegment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // skipped and deleted again when the journal is opened the next time
+            logger.warn("Could not delete journal segment " + segment, e);
+        }
+    }
+
+    /**
+     * Stops the background threads and forces all records to the storage device. Records appended
+     * afterward are dropped.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        LockSupport.unpark(flushThread);
+        compactionExecutor.shutdown();
+        try {
+            flushThread.join();
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        activeSegment.force(activeSegment.getPosition());
+    }
+}
@@ -0,0 +1,42 @@
+package de.eliaspr.skullking.journal;
+
+import java.util.UUID;
+
+/**
+ * The commands which are recorded in the {@link GameJournal}. The journal itself implements this
+ * interface to append records, while recovery passes every record of the journal to another
+ * implementation which applies it to the restored games. Players are identified by their access
+ * token, cards by their trick code (see {@link de.eliaspr.skullking.game.TrickEngine#getTrickCode}).
+ */
+public interface JournalListener {
+
+    void gameCreated(UUID gameUUID, int gameCode, long seed);
+
+    void playerJoined(UUID gameUUID, UUID accessToken, String name, long timeJoined);
+
+    /**
+     * Bots get their access token from the random generator of the game, so only the time they
+     * joined is recorded.
+     */
+    void botAdded(UUID gameUUID, long timeJoined);
+
+    void playerConnected(UUID gameUUID, UUID accessToken);
+
+    void playerRemoved(UUID gameUUID, UUID accessToken);
+
+    void gameStarted(UUID gameUUID);
+
+    void winsPredicted(UUID gameUUID, UUID accessToken, int predictedWins);
+
+    void cardPlayed(UUID gameUUID, UUID accessToken, int trickCode);
+
+    void gameContinued(UUID gameUUID);
+
+    void gameClosed(UUID gameUUID);
+
+    /**
+     * The snapshot with the given ID contains the state of the game after all previous records of
+     * the game, see {@link GameJournal#snapshotCompleted}.
+     */
+    void snapshotTaken(UUID gameUUID, long snapshotId);
+}
@@ -0,0 +1,169 @@
+package de.eliaspr.skullking.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * A single file of the journal. It starts with a header (magic number and format version) which is
+ * followed by records of the form {@code [int payload length][int CRC32C of the payload][payload]}.
+ * Segments are memory-mapped with a fixed size, so the unused remainder of a segment is zero and a
+ * length of zero marks the end of the records. A record with a wrong checksum was torn by a crash
+ * and ends the segment as well.
+ *
+ * <p>Segments are numbered in the order they were written. A compacted file contains the records
+ * of live games from a range of segments and replaces all segments of that range.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x534B4A31; // "SKJ1"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final Pattern FILE_NAME = Pattern.compile("(segment|compacted)-(\\d+)(?:-(\\d+))?\\.journal");
+
+    final Path path;
+    final long firstIndex;
+    final long lastIndex;
+    final boolean compacted;
+
+    // only set for the segment which is currently written
+    private MappedByteBuffer buffer;
+    private int position;
+    private int forcedPosition;
+
+    private JournalSegment(Path path, long firstIndex, long lastIndex, boolean compacted) {
+        this.path = path;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.compacted = compacted;
+    }
+
+    /**
+     * Returns the segment stored in the given file, or null if the file name does not belong to a
+     * journal segment.
+     */
+    static JournalSegment fromPath(Path path) {
+        var matcher = FILE_NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        var first = Long.parseLong(matcher.group(2));
+        if (matcher.group(1).equals("segment")) {
+            return new JournalSegment(path, first, first, false);
+        }
+        if (matcher.group(3) == null) {
+            return null;
+        }
+        return new JournalSegment(path, first, Long.parseLong(matcher.group(3)), true);
+    }
+
+    static Path getSegmentPath(Path directory, long index) {
+        return directory.resolve(String.format("segment-%012d.journal", index));
+    }
+
+    static Path getCompactedPath(Path directory, long firstIndex, long lastIndex) {
+        return directory.resolve(String.format("compacted-%012d-%012d.journal", firstIndex, lastIndex));
+    }
+
+    /**
+     * Creates and maps a new segment of the given size, which can be appended to.
+     */
+    static JournalSegment create(Path directory, long index, int size) throws IOException {
+        var segment = new JournalSegment(getSegmentPath(directory, index), index, index, false);
+        try (var channel = FileChannel.open(
+                segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        writeHeader(segment.buffer);
+        segment.position = HEADER_SIZE;
+        return segment;
+    }
+
+    static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+    }
+
+    /**
+     * Appends a record with the remaining bytes of the payload. Returns false if the segment is
+     * full. Must not be called concurrently.
+     */
+    boolean append(ByteBuffer payload) {
+        var length = payload.remaining();
+        if (buffer.capacity() - position < RECORD_HEADER_SIZE + length) {
+            return false;
+        }
+        var crc = new CRC32C();
+        crc.update(payload.duplicate());
+        buffer.put(position + RECORD_HEADER_SIZE, payload, payload.position(), length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // the length is written last, a crash before that leaves the end marker in place
+        buffer.putInt(position, length);
+        position += RECORD_HEADER_SIZE + length;
+        return true;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Writes all records up to the given position to the storage device.
+     */
+    synchronized void force(int upTo) {
+        if (upTo > forcedPosition) {
+            buffer.force(forcedPosition, upTo - forcedPosition);
+            forcedPosition = upTo;
+        }
+    }
+
+    /**
+     * Passes every valid record to the consumer. The buffer contains the complete record including
+     * its header and is positioned at the start of the payload. Returns the number of records.
+     */
+    int forEachRecord(Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer data;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a journal segment: " + path);
+        }
+        if (data.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported journal format version " + data.getInt(4) + ": " + path);
+        }
+
+        var count = 0;
+        var offset = HEADER_SIZE;
+        var crc = new CRC32C();
+        while (data.limit() - offset >= RECORD_HEADER_SIZE) {
+            var length = data.getInt(offset);
+            if (length <= 0 || length > data.limit() - offset - RECORD_HEADER_SIZE) {
+                break;
+            }
+            var payload = data.slice(offset + RECORD_HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != data.getInt(offset + 4)) {
+                break;
+            }
+            consumer.accept(data.slice(offset, RECORD_HEADER_SIZE + length).position(RECORD_HEADER_SIZE));
+            offset += RECORD_HEADER_SIZE + length;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return path.getFileName().toString();
+    }
+}
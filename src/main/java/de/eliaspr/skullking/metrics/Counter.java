@@ -0,0 +1,43 @@
+package de.eliaspr.skullking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count. Based on a {@link LongAdder}, so threads incrementing it at
+ * the same time do not contend on one memory location.
+ */
+public final class Counter extends Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help, String labelName, String labelValue) {
+        super(name, help, labelName, labelValue);
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    String getType() {
+        return "counter";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        out.append(name).append(formatLabels(null, null)).append(' ').append(get()).append('\n');
+    }
+
+    @Override
+    void writeJson(StringBuilder out) {
+        out.append(get());
+    }
+}
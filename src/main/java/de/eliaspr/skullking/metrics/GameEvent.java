@@ -0,0 +1,55 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base of the flight recorder events of the server. Besides being recorded by JFR when a recording
+ * is running, every finished operation is offered to {@link SlowOperations}. Usage:
+ *
+ * <pre>
+ * var event = new PlayCardEvent();
+ * event.start();
+ * ...
+ * event.finish(gameCode, command);
+ * </pre>
+ */
+@Category("SkullKing")
+public abstract class GameEvent extends Event {
+
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Command")
+    public String command;
+
+    // transient fields are not part of the recorded event
+    private final transient String operation;
+    private transient long startTime;
+
+    GameEvent(String operation) {
+        this.operation = operation;
+    }
+
+    public final void start() {
+        startTime = System.nanoTime();
+        begin();
+    }
+
+    /**
+     * Ends the operation. The game code and command are only stored if the event is recorded, so
+     * they should be values which exist anyway (like the ID of a card) rather than strings built
+     * for the event.
+     */
+    public final void finish(int gameCode, String command) {
+        end();
+        var duration = System.nanoTime() - startTime;
+        if (shouldCommit()) {
+            this.gameCode = gameCode;
+            this.command = command;
+            commit();
+        }
+        SlowOperations.record(operation, gameCode, command, duration);
+    }
+}
@@ -0,0 +1,31 @@
+package de.eliaspr.skullking.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value which is read from its source whenever the metrics are written, e.g. the size of a map.
+ */
+public final class Gauge extends Metric {
+
+    private final LongSupplier value;
+
+    Gauge(String name, String help, LongSupplier value) {
+        super(name, help, null, null);
+        this.value = value;
+    }
+
+    @Override
+    String getType() {
+        return "gauge";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        out.append(name).append(' ').append(value.getAsLong()).append('\n');
+    }
+
+    @Override
+    void writeJson(StringBuilder out) {
+        out.append(value.getAsLong());
+    }
+}
@@ -0,0 +1,94 @@
+package de.eliaspr.skullking.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts values in buckets whose upper bounds are powers of two, so the bucket of a value is found
+ * by counting its leading zeros. Every bucket is a {@link LongAdder}, which makes recording
+ * lock-free. Values are recorded as longs in a base unit (e.g. nanoseconds) and written divided
+ * by {@code unit} (e.g. 1e9 for seconds).
+ */
+public final class Histogram extends Metric {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final int minExponent;
+    // bucket i counts the values up to 2^(minExponent + i), the last one all larger values
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+    private final double unit;
+
+    Histogram(String name, String help, int minExponent, int maxExponent, double unit) {
+        super(name, help, null, null);
+        this.minExponent = minExponent;
+        this.unit = unit;
+        buckets = new LongAdder[maxExponent - minExponent + 2];
+        for (var i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        // the smallest exponent e with value <= 2^e
+        var exponent = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        var index = Math.min(Math.max(exponent - minExponent, 0), buckets.length - 1);
+        buckets[index].increment();
+        sum.add(value);
+    }
+
+    private double getUpperBound(int bucket) {
+        return Math.scalb(1.0, minExponent + bucket) / unit;
+    }
+
+    @Override
+    String getType() {
+        return "histogram";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        var cumulativeCount = 0L;
+        for (var i = 0; i < buckets.length; i++) {
+            cumulativeCount += buckets[i].sum();
+            var bound = i == buckets.length - 1 ? "+Inf" : String.valueOf(getUpperBound(i));
+            out.append(name)
+                    .append("_bucket")
+                    .append(formatLabels("le", bound))
+                    .append(' ')
+                    .append(cumulativeCount)
+                    .append('\n');
+        }
+        out.append(name).append("_sum ").append(sum.sum() / unit).append('\n');
+        out.append(name).append("_count ").append(cumulativeCount).append('\n');
+    }
+
+    /**
+     * Writes the count, the sum and estimates of the median, 90th and 99th percentile, each being
+     * the upper bound of the bucket which contains it.
+     */
+    @Override
+    void writeJson(StringBuilder out) {
+        var counts = new long[buckets.length];
+        var count = 0L;
+        for (var i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        out.append("{\"count\":").append(count).append(",\"sum\":").append(sum.sum() / unit);
+        for (var quantile : QUANTILES) {
+            out.append(",\"p").append(Math.round(quantile * 100)).append("\":");
+            if (count == 0) {
+                out.append("null");
+                continue;
+            }
+            var cumulativeCount = 0L;
+            var bucket = 0;
+            while ((cumulativeCount += counts[bucket]) < Math.ceil(quantile * count)) {
+                bucket++;
+            }
+            // the last bucket has no upper bound, the largest finite one is the best estimate
+            out.append(getUpperBound(Math.min(bucket, buckets.length - 2)));
+        }
+        out.append('}');
+    }
+}
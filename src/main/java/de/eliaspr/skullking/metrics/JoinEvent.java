@@ -0,0 +1,15 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.eliaspr.skullking.Join")
+@Label("Join Game")
+@Description("Looking up or creating the access token of a player joining a game. The command is the player name.")
+public final class JoinEvent extends GameEvent {
+
+    public JoinEvent() {
+        super("join");
+    }
+}
@@ -0,0 +1,46 @@
+package de.eliaspr.skullking.metrics;
+
+/**
+ * A metric with an optional label, several metrics with the same name but different label values
+ * form one metric family in the Prometheus text format.
+ */
+public abstract sealed class Metric permits Counter, Gauge, Histogram {
+
+    final String name;
+    final String help;
+    final String labelName;
+    final String labelValue;
+
+    Metric(String name, String help, String labelName, String labelValue) {
+        this.name = name;
+        this.help = help;
+        this.labelName = labelName;
+        this.labelValue = labelValue;
+    }
+
+    abstract String getType();
+
+    abstract void writePrometheus(StringBuilder out);
+
+    abstract void writeJson(StringBuilder out);
+
+    /**
+     * The label in the Prometheus text format, with the given additional label appended.
+     */
+    String formatLabels(String extraName, String extraValue) {
+        if (labelName == null && extraName == null) {
+            return "";
+        }
+        var labels = new StringBuilder("{");
+        if (labelName != null) {
+            labels.append(labelName).append("=\"").append(labelValue).append('"');
+        }
+        if (extraName != null) {
+            if (labelName != null) {
+                labels.append(',');
+            }
+            labels.append(extraName).append("=\"").append(extraValue).append('"');
+        }
+        return labels.append('}').toString();
+    }
+}
@@ -0,0 +1,114 @@
+package de.eliaspr.skullking.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of all metrics of the server. Metrics are registered once, usually in a static field of
+ * the class which updates them, and can then be updated from any thread without locking. All
+ * metrics can be written in the Prometheus text format or as JSON.
+ */
+public final class Metrics {
+
+    private static final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    private Metrics() {}
+
+    public static Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    /**
+     * Registers a counter with a label, e.g. the verb of the counted commands. Registering the same
+     * name and label value again returns the existing counter.
+     */
+    public static synchronized Counter counter(String name, String help, String labelName, String labelValue) {
+        for (var metric : metrics) {
+            if (metric instanceof Counter counter
+                    && metric.name.equals(name)
+                    && Objects.equals(metric.labelValue, labelValue)) {
+                return counter;
+            }
+        }
+        var counter = new Counter(name, help, labelName, labelValue);
+        metrics.add(counter);
+        return counter;
+    }
+
+    public static synchronized void gauge(String name, String help, LongSupplier value) {
+        metrics.removeIf(metric -> metric.name.equals(name));
+        metrics.add(new Gauge(name, help, value));
+    }
+
+    /**
+     * Registers a histogram whose buckets end at the powers of two from {@code 2^minExponent} to
+     * {@code 2^maxExponent}, see {@link Histogram}.
+     */
+    public static synchronized Histogram histogram(
+            String name, String help, int minExponent, int maxExponent, double unit) {
+        for (var metric : metrics) {
+            if (metric instanceof Histogram histogram && metric.name.equals(name)) {
+                return histogram;
+            }
+        }
+        var histogram = new Histogram(name, help, minExponent, maxExponent, unit);
+        metrics.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public static String toPrometheusText() {
+        var out = new StringBuilder(4096);
+        for (var family : getFamilies()) {
+            var first = family.get(0);
+            out.append("# HELP ").append(first.name).append(' ').append(first.help).append('\n');
+            out.append("# TYPE ").append(first.name).append(' ').append(first.getType()).append('\n');
+            for (var metric : family) {
+                metric.writePrometheus(out);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes all metrics as one JSON object. Metrics with a label are written as an object of
+     * their values by label value.
+     */
+    public static String toJson() {
+        var out = new StringBuilder(4096).append('{');
+        for (var family : getFamilies()) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append('"').append(family.get(0).name).append("\":");
+            if (family.get(0).labelName == null) {
+                family.get(0).writeJson(out);
+                continue;
+            }
+            out.append('{');
+            for (var i = 0; i < family.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('"').append(family.get(i).labelValue).append("\":");
+                family.get(i).writeJson(out);
+            }
+            out.append('}');
+        }
+        return out.append('}').toString();
+    }
+
+    private static List<List<Metric>> getFamilies() {
+        var families = new LinkedHashMap<String, List<Metric>>();
+        for (var metric : metrics) {
+            families.computeIfAbsent(metric.name, name -> new ArrayList<>()).add(metric);
+        }
+        return new ArrayList<>(families.values());
+    }
+}
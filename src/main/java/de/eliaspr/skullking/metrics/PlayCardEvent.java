@@ -0,0 +1,15 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.eliaspr.skullking.PlayCard")
+@Label("Play Card")
+@Description("A card played by a player, including the resulting state broadcast. The command is the card ID.")
+public final class PlayCardEvent extends GameEvent {
+
+    public PlayCardEvent() {
+        super("play-card");
+    }
+}
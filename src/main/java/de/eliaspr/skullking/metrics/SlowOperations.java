@@ -0,0 +1,75 @@
+package de.eliaspr.skullking.metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Always-on log of the slowest operations (see {@link GameEvent}) since the start of the server or
+ * the last {@link #reset()}, so latency spikes in production can be looked into afterward without
+ * a flight recording. Operations faster than the fastest logged one are rejected by reading a
+ * single volatile field, only slower ones take the lock.
+ */
+public final class SlowOperations {
+
+    public static final int CAPACITY = 100;
+
+    /**
+     * A logged operation, the game code is 0 if it does not belong to a game and the time is the
+     * end of the operation in ISO-8601 format.
+     */
+    public record Entry(String operation, int gameCode, String command, long durationMicros, String time) {}
+
+    private record PendingEntry(String operation, int gameCode, String command, long duration, long time) {}
+
+    // the fastest logged operation is at the head
+    private static final PriorityQueue<PendingEntry> slowest =
+            new PriorityQueue<>(CAPACITY + 1, Comparator.comparingLong(PendingEntry::duration));
+    private static volatile long threshold = 0;
+
+    private SlowOperations() {}
+
+    static void record(String operation, int gameCode, String command, long durationNanos) {
+        if (durationNanos <= threshold) {
+            return;
+        }
+        synchronized (slowest) {
+            slowest.add(new PendingEntry(operation, gameCode, command, durationNanos, System.currentTimeMillis()));
+            if (slowest.size() > CAPACITY) {
+                slowest.poll();
+            }
+            if (slowest.size() == CAPACITY) {
+                threshold = slowest.peek().duration;
+            }
+        }
+    }
+
+    /**
+     * Returns the logged operations, the slowest first.
+     */
+    public static List<Entry> getSlowest() {
+        List<PendingEntry> entries;
+        synchronized (slowest) {
+            entries = new ArrayList<>(slowest);
+        }
+        entries.sort(Comparator.comparingLong(PendingEntry::duration).reversed());
+        return entries.stream()
+                .map(entry -> new Entry(
+                        entry.operation,
+                        entry.gameCode,
+                        entry.command,
+                        TimeUnit.NANOSECONDS.toMicros(entry.duration),
+                        Instant.ofEpochMilli(entry.time).toString()))
+                .toList();
+    }
+
+    public static void reset() {
+        synchronized (slowest) {
+            slowest.clear();
+            threshold = 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.eliaspr.skullking.SocketWrite")
+@Label("Web Socket Write")
+@Description("Writing one queued message to a web socket session. The command is the session ID.")
+public final class SocketWriteEvent extends GameEvent {
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+
+    public SocketWriteEvent() {
+        super("socket-write");
+    }
+}
@@ -0,0 +1,24 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.eliaspr.skullking.StateSend")
+@Label("Game State Send")
+@Description("Serializing the game state for one player and queueing it for sending. The command is the kind of"
+        + " message (snapshot, patch or binary).")
+public final class StateSendEvent extends GameEvent {
+
+    @Label("Player")
+    public String playerName;
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+
+    public StateSendEvent() {
+        super("send-state");
+    }
+}
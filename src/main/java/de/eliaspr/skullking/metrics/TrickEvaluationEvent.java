@@ -0,0 +1,15 @@
+package de.eliaspr.skullking.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.eliaspr.skullking.TrickEvaluation")
+@Label("Trick Evaluation")
+@Description("Finding the winning card of a complete trick. The command is the ID of the card which completed it.")
+public final class TrickEvaluationEvent extends GameEvent {
+
+    public TrickEvaluationEvent() {
+        super("evaluate-trick");
+    }
+}
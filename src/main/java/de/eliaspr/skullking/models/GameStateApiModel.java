@@ -1,6 +1,7 @@
 package de.eliaspr.skullking.models;
 
 public record GameStateApiModel(
+        int version,
         String gameState,
         int roundIndex,
         int playerCount,
@@ -0,0 +1,3 @@
+package de.eliaspr.skullking.models;
+
+public record GameStatePatchApiModel(int version, PlayerPatchApiModel[] patch, String[] removedCards) {}
@@ -0,0 +1,7 @@
+package de.eliaspr.skullking.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PlayerPatchApiModel(
+        int index, Boolean nextTurn, Integer predicted, Integer actual, Integer points, String playedCard) {}
@@ -0,0 +1,63 @@
+package de.eliaspr.skullking.server;
+
+/**
+ * Constants of the compact binary protocol. Clients opt into the binary protocol by requesting the
+ * {@link #SUB_PROTOCOL} web socket sub-protocol during the handshake, all other clients keep using
+ * the text protocol. Numbers are big-endian, cards are encoded as their {@code Card.ordinal()}.
+ *
+ * <p>Commands sent by the client, all starting with the opcode and the 16 byte player token (most
+ * significant bits first):
+ *
+ * <pre>
+ * CONNECT    [0x01][token]
+ * DISCONNECT [0x02][token]
+ * START      [0x03][token]
+ * CONTINUE   [0x04][token]
+ * PREDICT    [0x05][token][u8 predicted wins]
+ * PLAY       [0x06][token][u8 card][u8 mode: 0 = Scary Mary as flag, 1 = as pirate]
+ * RESYNC     [0x07][token]
+ * ADD_BOT    [0x08][token]
+ * </pre>
+ *
+ * <p>Frames sent by the server:
+ *
+ * <pre>
+ * WELCOME    [0x81][UTF-8 JSON, same content as the text protocol's welcome message]
+ * STATE      [0x82][i32 version][u8 game state][u8 round][u8 player count]
+ *            player count x ([u8 name length][UTF-8 name][u8 flags][u8 predicted][u8 actual]
+ *                            [i16 points][u8 played card or 0xFF])
+ *            [u8 game master][u8 card count][card count x u8 card]
+ * TURN_TIMER [0x83][i32 milliseconds left for the current bid or turn]
+ * </pre>
+ *
+ * Game states are WAITING_FOR_START (0), PREDICTING_WINS (1), WAITING_FOR_CONTINUE (2),
+ * PLAYING_CARDS (3) and FINISHED (4). Player flags: bit 0 = next turn, bit 1 = predicted and
+ * actual wins are visible, bit 2 = the played card is Scary Mary played as a pirate. The binary
+ * protocol always sends full state frames, superseded frames are dropped for slow clients. A turn
+ * timer frame follows the state frame which starts a new bid or turn, if turn timeouts are enabled.
+ */
+public final class BinaryProtocol {
+
+    public static final String SUB_PROTOCOL = "skullking-binary";
+    public static final int TOKEN_LENGTH = 16;
+
+    public static final byte CMD_CONNECT = 0x01;
+    public static final byte CMD_DISCONNECT = 0x02;
+    public static final byte CMD_START = 0x03;
+    public static final byte CMD_CONTINUE = 0x04;
+    public static final byte CMD_PREDICT = 0x05;
+    public static final byte CMD_PLAY = 0x06;
+    public static final byte CMD_RESYNC = 0x07;
+    public static final byte CMD_ADD_BOT = 0x08;
+
+    public static final byte FRAME_WELCOME = (byte) 0x81;
+    public static final byte FRAME_STATE = (byte) 0x82;
+    public static final byte FRAME_TURN_TIMER = (byte) 0x83;
+
+    public static final int PLAYER_FLAG_NEXT_TURN = 1;
+    public static final int PLAYER_FLAG_WINS_VISIBLE = 1 << 1;
+    public static final int PLAYER_FLAG_SCARY_MARY_PIRATE = 1 << 2;
+    public static final int NO_CARD = 0xFF;
+
+    private BinaryProtocol() {}
+}
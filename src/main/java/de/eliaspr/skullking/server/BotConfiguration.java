@@ -0,0 +1,13 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.bot.BotController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class BotConfiguration {
+
+    public BotConfiguration(@Value("${skullking.bots.move-budget-ms}") long moveBudgetMillis) {
+        BotController.configure(moveBudgetMillis);
+    }
+}
@@ -0,0 +1,164 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.Card;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The images of all cards packed into a few large images (sprite atlases), so a client loads a
+ * handful of images instead of one per card. The atlases are created at startup from the card
+ * images in {@code htdocs/img/cards} and are described to the clients by a manifest which is sent
+ * with the welcome message.
+ */
+final class CardAtlas {
+
+    static final String DIRECTORY = "img/cards/";
+
+    private static final Logger logger = LoggerFactory.getLogger(CardAtlas.class);
+    // larger images are not decoded by some mobile browsers
+    private static final int MAX_ATLAS_SIZE = 4096;
+
+    private record Sprite(int atlas, int x, int y, int width, int height) {}
+
+    private final List<byte[]> atlases;
+    private final int[] atlasWidths;
+    private final int[] atlasHeights;
+    private final Map<String, Sprite> sprites;
+
+    private CardAtlas(List<byte[]> atlases, int[] atlasWidths, int[] atlasHeights, Map<String, Sprite> sprites) {
+        this.atlases = atlases;
+        this.atlasWidths = atlasWidths;
+        this.atlasHeights = atlasHeights;
+        this.sprites = sprites;
+    }
+
+    /**
+     * Packs the images of all cards found in the given files into a grid. Returns null if the
+     * image of a card is missing, in which case clients load the images one by one.
+     */
+    static CardAtlas pack(StaticAssetCache files) throws IOException {
+        var startTime = System.nanoTime();
+        var images = new LinkedHashMap<String, BufferedImage>();
+        var cellWidth = 0;
+        var cellHeight = 0;
+        for (var card : Card.values()) {
+            var file = files.get(DIRECTORY + card.cardID + ".png");
+            var image = file == null ? null : ImageIO.read(new ByteArrayInputStream(file.content()));
+            if (image == null) {
+                logger.info("No card atlas is created, the image of card '" + card.cardID + "' is missing");
+                return null;
+            }
+            images.put(card.cardID, image);
+            cellWidth = Math.max(cellWidth, image.getWidth());
+            cellHeight = Math.max(cellHeight, image.getHeight());
+        }
+
+        // as few atlases as possible, with the cards distributed evenly among them
+        var maxColumns = Math.max(1, MAX_ATLAS_SIZE / cellWidth);
+        var maxRows = Math.max(1, MAX_ATLAS_SIZE / cellHeight);
+        var atlasCount = Math.ceilDiv(images.size(), maxColumns * maxRows);
+        var cardsPerAtlas = Math.ceilDiv(images.size(), atlasCount);
+        var columns = Math.ceilDiv(cardsPerAtlas, Math.ceilDiv(cardsPerAtlas, maxColumns));
+        var atlases = new ArrayList<byte[]>(atlasCount);
+        var atlasWidths = new int[atlasCount];
+        var atlasHeights = new int[atlasCount];
+        var sprites = new LinkedHashMap<String, Sprite>();
+        var cardIds = new ArrayList<>(images.keySet());
+        for (var atlas = 0; atlas < atlasCount; atlas++) {
+            var first = atlas * cardsPerAtlas;
+            var count = Math.min(cardsPerAtlas, cardIds.size() - first);
+            atlasWidths[atlas] = Math.min(columns, count) * cellWidth;
+            atlasHeights[atlas] = Math.ceilDiv(count, columns) * cellHeight;
+            var atlasImage = new BufferedImage(atlasWidths[atlas], atlasHeights[atlas], BufferedImage.TYPE_INT_ARGB);
+            var graphics = atlasImage.createGraphics();
+            for (var i = 0; i < count; i++) {
+                var cardId = cardIds.get(first + i);
+                var image = images.get(cardId);
+                var sprite = new Sprite(
+                        atlas, i % columns * cellWidth, i / columns * cellHeight, image.getWidth(), image.getHeight());
+                graphics.drawImage(image, sprite.x, sprite.y, null);
+                sprites.put(cardId, sprite);
+            }
+            graphics.dispose();
+            var png = new ByteArrayOutputStream();
+            ImageIO.write(atlasImage, "png", png);
+            atlases.add(png.toByteArray());
+        }
+        logger.info("Packed " + sprites.size() + " card images into " + atlasCount + " atlases in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        return new CardAtlas(atlases, atlasWidths, atlasHeights, sprites);
+    }
+
+    /**
+     * The atlas images as PNG files, keyed by their path relative to {@code htdocs}.
+     */
+    Map<String, byte[]> getFiles() {
+        var files = new LinkedHashMap<String, byte[]>();
+        for (var i = 0; i < atlases.size(); i++) {
+            files.put(getPath(i), atlases.get(i));
+        }
+        return files;
+    }
+
+    private static String getPath(int atlas) {
+        return DIRECTORY + "atlas-" + atlas + ".png";
+    }
+
+    /**
+     * Describes the atlases to the client in JSON: the fingerprinted URL and size of each atlas
+     * and, for each card, the index of its atlas and its position and size in pixels.
+     *
+     * <pre>
+     * {"images":[{"url":"/img/cards/atlas-0.1a2b3c4d5e6f7a8b.png","width":3200,"height":4800}, ...],
+     *  "cards":{"skullking":[0,0,0,400,600], ...}}
+     * </pre>
+     */
+    String toManifest(StaticAssetCache files) {
+        var manifest = new StringBuilder("{\"images\":[");
+        for (var i = 0; i < atlases.size(); i++) {
+            if (i > 0) {
+                manifest.append(',');
+            }
+            manifest.append("{\"url\":\"/")
+                    .append(files.getFingerprintedPath(getPath(i)))
+                    .append("\",\"width\":")
+                    .append(atlasWidths[i])
+                    .append(",\"height\":")
+                    .append(atlasHeights[i])
+                    .append('}');
+        }
+        manifest.append("],\"cards\":{");
+        var first = true;
+        for (var entry : sprites.entrySet()) {
+            if (!first) {
+                manifest.append(',');
+            }
+            first = false;
+            var sprite = entry.getValue();
+            manifest.append('"')
+                    .append(entry.getKey())
+                    .append("\":[")
+                    .append(sprite.atlas)
+                    .append(',')
+                    .append(sprite.x)
+                    .append(',')
+                    .append(sprite.y)
+                    .append(',')
+                    .append(sprite.width)
+                    .append(',')
+                    .append(sprite.height)
+                    .append(']');
+        }
+        return manifest.append("}}").toString();
+    }
+}
@@ -0,0 +1,93 @@
+package de.eliaspr.skullking.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An HTML page with {@code {name}} placeholders, compiled once into UTF-8 encoded segments.
+ * Rendering writes the segments and the encoded parameter values one after the other, without
+ * building the page as a string first. Braces which do not enclose one of the declared parameter
+ * names are left as they are.
+ */
+final class HtmlTemplate {
+
+    private final byte[][] segments;
+    // parameter index of the placeholder following each segment except the last
+    private final int[] slots;
+
+    private HtmlTemplate(byte[][] segments, int[] slots) {
+        this.segments = segments;
+        this.slots = slots;
+    }
+
+    static HtmlTemplate compile(String html, String... parameterNames) {
+        var segments = new ArrayList<byte[]>();
+        var slots = new ArrayList<Integer>();
+        var names = Arrays.asList(parameterNames);
+        var segmentStart = 0;
+        var index = html.indexOf('{');
+        while (index >= 0) {
+            var end = html.indexOf('}', index);
+            if (end < 0) {
+                break;
+            }
+            var parameter = names.indexOf(html.substring(index + 1, end));
+            if (parameter >= 0) {
+                segments.add(html.substring(segmentStart, index).getBytes(StandardCharsets.UTF_8));
+                slots.add(parameter);
+                segmentStart = end + 1;
+            }
+            index = html.indexOf('{', parameter >= 0 ? end + 1 : index + 1);
+        }
+        segments.add(html.substring(segmentStart).getBytes(StandardCharsets.UTF_8));
+        return new HtmlTemplate(
+                segments.toArray(byte[][]::new),
+                slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * The rendered page, ready to be written with {@link #writeTo}. The values must be given in
+     * the order of the parameter names and are inserted as they are, so they must not contain
+     * anything which needs to be escaped.
+     */
+    Rendered render(String... values) {
+        var encodedValues = new byte[values.length][];
+        var length = 0L;
+        for (var i = 0; i < values.length; i++) {
+            encodedValues[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        for (var segment : segments) {
+            length += segment.length;
+        }
+        for (var slot : slots) {
+            length += encodedValues[slot].length;
+        }
+        return new Rendered(encodedValues, length);
+    }
+
+    final class Rendered {
+
+        private final byte[][] values;
+        private final long length;
+
+        private Rendered(byte[][] values, long length) {
+            this.values = values;
+            this.length = length;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            for (var i = 0; i < slots.length; i++) {
+                out.write(segments[i]);
+                out.write(values[slots[i]]);
+            }
+            out.write(segments[segments.length - 1]);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.SkullKing;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+// restored games start the timer of their current turn, so the timeouts must be configured first
+@Configuration
+@DependsOn("turnTimerConfiguration")
+public class JournalConfiguration implements DisposableBean {
+
+    public JournalConfiguration(
+            @Value("${skullking.journal.directory}") String directory,
+            @Value("${skullking.journal.segment-size-bytes}") int segmentSize,
+            @Value("${skullking.journal.flush-interval-ms}") long flushIntervalMillis,
+            @Value("${skullking.journal.snapshot-interval-s}") long snapshotIntervalSeconds)
+            throws IOException {
+        // the journal is disabled unless a directory is configured
+        if (!directory.isBlank()) {
+            SkullKing.enableJournal(Path.of(directory), segmentSize, flushIntervalMillis, snapshotIntervalSeconds);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        SkullKing.closeJournal();
+    }
+}
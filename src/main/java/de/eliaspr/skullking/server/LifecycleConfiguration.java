@@ -0,0 +1,26 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.SkullKing;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LifecycleConfiguration {
+
+    public LifecycleConfiguration(
+            @Value("${skullking.lifecycle.lobby-idle-timeout-s}") long lobbyTimeoutSeconds,
+            @Value("${skullking.lifecycle.game-idle-timeout-s}") long gameTimeoutSeconds,
+            @Value("${skullking.lifecycle.finished-idle-timeout-s}") long finishedTimeoutSeconds,
+            @Value("${skullking.lifecycle.max-games}") int maxGames,
+            @Value("${skullking.lifecycle.max-players}") int maxPlayers,
+            @Value("${skullking.lifecycle.check-interval-s}") long intervalSeconds) {
+        SkullKing.enableReaper(
+                TimeUnit.SECONDS.toMillis(lobbyTimeoutSeconds),
+                TimeUnit.SECONDS.toMillis(gameTimeoutSeconds),
+                TimeUnit.SECONDS.toMillis(finishedTimeoutSeconds),
+                maxGames,
+                maxPlayers,
+                intervalSeconds);
+    }
+}
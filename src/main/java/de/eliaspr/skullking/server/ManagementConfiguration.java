@@ -0,0 +1,32 @@
+package de.eliaspr.skullking.server;
+
+import org.apache.catalina.connector.Connector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opens a second port for the metrics and admin endpoints, which by default only listens on the
+ * loopback interface. The endpoints check the port a request arrived on instead of its remote
+ * address, so they stay private behind a reverse proxy on the same machine, whose requests all come
+ * from the loopback address but arrive on the public port.
+ */
+@Configuration
+public class ManagementConfiguration {
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> managementConnector(
+            @Value("${skullking.management.port}") int port,
+            @Value("${skullking.management.address}") String address) {
+        return factory -> {
+            if (port > 0) {
+                var connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+                connector.setPort(port);
+                connector.setProperty("address", address);
+                factory.addAdditionalTomcatConnectors(connector);
+            }
+        };
+    }
+}
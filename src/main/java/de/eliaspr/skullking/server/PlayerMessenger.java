@@ -1,23 +1,135 @@
 package de.eliaspr.skullking.server;
 
 import de.eliaspr.skullking.game.Player;
-import java.io.IOException;
+import de.eliaspr.skullking.metrics.Metrics;
+import de.eliaspr.skullking.server.SessionOutbox.MessageKind;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
 
 public class PlayerMessenger {
 
+    private static final ConcurrentHashMap<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+    static {
+        Metrics.gauge(
+                "skullking_outbox_queue_depth",
+                "Number of messages queued for all sessions but not yet sent",
+                PlayerMessenger::getTotalQueueDepth);
+    }
+
+    static volatile long sendTimeLimit = 10_000;
+    static volatile long sendBufferSizeLimit = 512 * 1024;
+
+    static void configure(long sendTimeLimit, long sendBufferSizeLimit) {
+        PlayerMessenger.sendTimeLimit = sendTimeLimit;
+        PlayerMessenger.sendBufferSizeLimit = sendBufferSizeLimit;
+    }
+
     public static void sendMessageToPlayer(Player player, String message) {
-        if (player.webSocketSession == null) {
-            return;
+        sendMessage(player, new TextMessage(message), MessageKind.OTHER);
+    }
+
+    /**
+     * Sends the welcome message, which is wrapped in a {@link BinaryProtocol#FRAME_WELCOME} frame for
+     * clients using the binary protocol.
+     */
+    public static void sendWelcomeMessage(Player player, String welcomeMessage) {
+        if (player.binaryProtocol) {
+            var json = welcomeMessage.getBytes(StandardCharsets.UTF_8);
+            var frame = new byte[json.length + 1];
+            frame[0] = BinaryProtocol.FRAME_WELCOME;
+            System.arraycopy(json, 0, frame, 1, json.length);
+            sendMessage(player, new BinaryMessage(frame), MessageKind.OTHER);
+        } else {
+            sendMessageToPlayer(player, welcomeMessage);
         }
-        if (!player.webSocketSession.isOpen()) {
-            player.game.playerDisconnected(player);
-            return;
+    }
+
+    /**
+     * Sends the time left for the current bid or turn, as {@code {"turnTimeRemainingMs":<ms>}} or
+     * in a {@link BinaryProtocol#FRAME_TURN_TIMER} frame.
+     */
+    public static void sendTurnTimer(Player player, long remainingMillis) {
+        if (player.binaryProtocol) {
+            var frame = ByteBuffer.allocate(5)
+                    .put(BinaryProtocol.FRAME_TURN_TIMER)
+                    .putInt((int) Math.min(remainingMillis, Integer.MAX_VALUE))
+                    .array();
+            sendMessage(player, new BinaryMessage(frame), MessageKind.OTHER);
+        } else {
+            sendMessageToPlayer(player, "{\"turnTimeRemainingMs\":" + remainingMillis + "}");
         }
-        try {
-            player.webSocketSession.sendMessage(new TextMessage(message));
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Sends an already encoded {@link BinaryProtocol#FRAME_STATE} frame. Like a text snapshot, it
+     * replaces all game state messages of the player which are still waiting to be sent.
+     */
+    public static void sendBinaryGameState(Player player, byte[] frame) {
+        sendMessage(player, new BinaryMessage(frame), MessageKind.GAME_STATE_SNAPSHOT);
+    }
+
+    /**
+     * Sends an already UTF-8 encoded game state snapshot. A snapshot replaces all game state
+     * messages of the player which are still waiting to be sent.
+     */
+    public static void sendGameStateSnapshot(Player player, byte[] utf8Message) {
+        sendMessage(player, new TextMessage(utf8Message), MessageKind.GAME_STATE_SNAPSHOT);
+    }
+
+    /**
+     * Sends an already UTF-8 encoded game state patch.
+     */
+    public static void sendGameStatePatch(Player player, byte[] utf8Message) {
+        sendMessage(player, new TextMessage(utf8Message), MessageKind.GAME_STATE_PATCH);
+    }
+
+    /**
+     * Returns the number of messages which were queued for the player but not yet sent.
+     */
+    public static int getQueueDepth(Player player) {
+        var session = player.webSocketSession;
+        var outbox = session == null ? null : outboxes.get(session.getId());
+        return outbox == null ? 0 : outbox.getQueueDepth();
+    }
+
+    private static long getTotalQueueDepth() {
+        var total = 0;
+        for (var outbox : outboxes.values()) {
+            total += outbox.getQueueDepth();
+        }
+        return total;
+    }
+
+    static void sendMessage(WebSocketSession session, WebSocketMessage<?> message) {
+        getOutbox(session).enqueue(message, MessageKind.OTHER);
+    }
+
+    static void releaseSession(WebSocketSession session) {
+        var outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    private static void sendMessage(Player player, WebSocketMessage<?> message, MessageKind kind) {
+        var session = player.webSocketSession;
+        // a closed session is reported to the player by WebSocketHandler.afterConnectionClosed,
+        // at the latest when the session misses its pongs
+        if (session == null || !session.isOpen()) {
+            return;
         }
+        getOutbox(session).enqueue(message, kind);
+    }
+
+    private static SessionOutbox getOutbox(WebSocketSession session) {
+        // the player is notified about an evicted session by WebSocketHandler.afterConnectionClosed
+        return outboxes.computeIfAbsent(
+                session.getId(), id -> new SessionOutbox(session, () -> releaseSession(session)));
     }
 }
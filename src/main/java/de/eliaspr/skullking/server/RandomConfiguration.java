@@ -0,0 +1,16 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.SkullKing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RandomConfiguration {
+
+    public RandomConfiguration(@Value("${skullking.rng.seed}") String masterSeed) {
+        // games are seeded randomly unless a master seed is configured
+        if (!masterSeed.isBlank()) {
+            SkullKing.setMasterSeed(Long.parseLong(masterSeed.trim()));
+        }
+    }
+}
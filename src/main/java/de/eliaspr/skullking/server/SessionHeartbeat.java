@@ -0,0 +1,106 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Metrics;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Pings all open web socket sessions from a single thread and closes the sessions which did not
+ * answer with a pong in time. Browsers answer pings on their own, so a dead connection is noticed
+ * within the pong timeout even if nothing is sent to it. The closed session is reported to its
+ * player by {@link WebSocketHandler#afterConnectionClosed} like any other closed connection.
+ */
+final class SessionHeartbeat {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionHeartbeat.class);
+    private static final Counter missedPongs = Metrics.counter(
+            "skullking_pong_timeouts_total", "Number of sessions which were closed because they did not answer pings");
+
+    private final ConcurrentHashMap<String, Liveness> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("skullking-heartbeat").factory());
+    private final long pingIntervalMillis;
+    private final long pongTimeoutMillis;
+
+    private static final class Liveness {
+
+        final WebSocketSession session;
+        volatile long lastPongTime = System.currentTimeMillis();
+
+        Liveness(WebSocketSession session) {
+            this.session = session;
+        }
+    }
+
+    /**
+     * @param pingIntervalMillis interval in which all sessions are pinged, zero disables pings
+     * @param pongTimeoutMillis time without a pong after which a session is closed
+     */
+    SessionHeartbeat(long pingIntervalMillis, long pongTimeoutMillis) {
+        this.pingIntervalMillis = pingIntervalMillis;
+        this.pongTimeoutMillis = pongTimeoutMillis;
+    }
+
+    void start() {
+        if (pingIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(
+                    this::pingSessions, pingIntervalMillis, pingIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void register(WebSocketSession session) {
+        sessions.put(session.getId(), new Liveness(session));
+    }
+
+    void unregister(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    void pongReceived(WebSocketSession session) {
+        var liveness = sessions.get(session.getId());
+        if (liveness != null) {
+            liveness.lastPongTime = System.currentTimeMillis();
+        }
+    }
+
+    private void pingSessions() {
+        try {
+            pingOrCloseSessions();
+        } catch (RuntimeException e) {
+            // an exception would also cancel all further pings
+            logger.error("Could not ping sessions", e);
+        }
+    }
+
+    private void pingOrCloseSessions() {
+        var now = System.currentTimeMillis();
+        for (var liveness : sessions.values()) {
+            var session = liveness.session;
+            if (now - liveness.lastPongTime <= pongTimeoutMillis) {
+                // queued like every other message, so the ping is never written concurrently
+                PlayerMessenger.sendMessage(session, new PingMessage());
+                continue;
+            }
+            logger.info("Session " + session.getId() + " did not answer a ping for "
+                    + (now - liveness.lastPongTime) + " ms, closing it");
+            missedPongs.increment();
+            sessions.remove(session.getId(), liveness);
+            // closing may wait for the network, which must not delay the pings of the other sessions
+            Thread.startVirtualThread(() -> {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Metrics;
+import de.eliaspr.skullking.metrics.SocketWriteEvent;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Bounded queue of outgoing messages for a single web socket session. Messages are written by a
+ * virtual thread, so the caller never waits for the network, and only one message is ever written
+ * to the session at a time. A pending game state snapshot is superseded by a newer one, so a slow
+ * client only receives the latest state. A client which can not keep up with the configured buffer
+ * or time limit is disconnected.
+ */
+class SessionOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutbox.class);
+    private static final Executor sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private static final String SEND_FAILURES_HELP = "Number of sessions which were closed because sending failed";
+    private static final Counter sendErrors =
+            Metrics.counter("skullking_send_failures_total", SEND_FAILURES_HELP, "reason", "error");
+    private static final Counter bufferLimitExceeded =
+            Metrics.counter("skullking_send_failures_total", SEND_FAILURES_HELP, "reason", "buffer_limit");
+    private static final Counter timeLimitExceeded =
+            Metrics.counter("skullking_send_failures_total", SEND_FAILURES_HELP, "reason", "time_limit");
+
+    private final WebSocketSession session;
+    private final Runnable onEvicted;
+    private final ArrayDeque<OutgoingMessage> queue = new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private long sendStartTime = 0;
+    private boolean sending = false;
+    private boolean closed = false;
+
+    SessionOutbox(WebSocketSession session, Runnable onEvicted) {
+        this.session = session;
+        this.onEvicted = onEvicted;
+    }
+
+    void enqueue(WebSocketMessage<?> message, MessageKind kind) {
+        boolean exceedsLimits;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            if (kind == MessageKind.GAME_STATE_SNAPSHOT) {
+                // a full snapshot replaces all game state messages which were not sent yet
+                var iterator = queue.iterator();
+                while (iterator.hasNext()) {
+                    var pending = iterator.next();
+                    if (pending.kind != MessageKind.OTHER) {
+                        bufferedBytes -= pending.message.getPayloadLength();
+                        iterator.remove();
+                    }
+                }
+            }
+
+            queue.add(new OutgoingMessage(message, kind));
+            bufferedBytes += message.getPayloadLength();
+
+            exceedsLimits = !isWithinLimits();
+            if (exceedsLimits) {
+                closed = true;
+            } else if (!sending) {
+                sending = true;
+                sendStartTime = System.currentTimeMillis();
+                sendExecutor.execute(this::sendQueuedMessages);
+            }
+        }
+        if (exceedsLimits) {
+            evict();
+        }
+    }
+
+    synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        bufferedBytes = 0;
+    }
+
+    private boolean isWithinLimits() {
+        if (bufferedBytes > PlayerMessenger.sendBufferSizeLimit) {
+            logger.warn("Send buffer limit exceeded for session " + session.getId() + " (" + bufferedBytes
+                    + " bytes in " + queue.size() + " messages)");
+            bufferLimitExceeded.increment();
+            return false;
+        }
+        if (sending && System.currentTimeMillis() - sendStartTime > PlayerMessenger.sendTimeLimit) {
+            logger.warn("Send time limit exceeded for session " + session.getId());
+            timeLimitExceeded.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void sendQueuedMessages() {
+        while (true) {
+            OutgoingMessage next;
+            synchronized (this) {
+                next = closed ? null : queue.poll();
+                if (next == null) {
+                    sending = false;
+                    return;
+                }
+                bufferedBytes -= next.message.getPayloadLength();
+                sendStartTime = System.currentTimeMillis();
+            }
+
+            var event = new SocketWriteEvent();
+            event.start();
+            try {
+                session.sendMessage(next.message);
+            } catch (IOException | IllegalStateException e) {
+                logger.warn("Failed to send message to session " + session.getId(), e);
+                sendErrors.increment();
+                synchronized (this) {
+                    closed = true;
+                    sending = false;
+                }
+                evict();
+                return;
+            }
+            event.bytes = next.message.getPayloadLength();
+            event.finish(0, session.getId());
+        }
+    }
+
+    private void evict() {
+        close();
+        sendExecutor.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException ignored) {
+            }
+            onEvicted.run();
+        });
+    }
+
+    enum MessageKind {
+        GAME_STATE_SNAPSHOT,
+        GAME_STATE_PATCH,
+        OTHER
+    }
+
+    private record OutgoingMessage(WebSocketMessage<?> message, MessageKind kind) {}
+}
@@ -1,22 +1,30 @@
 package de.eliaspr.skullking.server;
 
+import de.eliaspr.skullking.game.GameReplay;
 import de.eliaspr.skullking.game.Player;
 import de.eliaspr.skullking.game.SkullKing;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import de.eliaspr.skullking.metrics.Metrics;
+import de.eliaspr.skullking.metrics.SlowOperations;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
-import java.util.function.Consumer;
+import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.view.RedirectView;
 
 @SpringBootApplication
@@ -24,50 +32,75 @@ import org.springframework.web.servlet.view.RedirectView;
 public class SkullKingServer {
     private static final Logger logger = LoggerFactory.getLogger(SkullKingServer.class);
 
-    private static String HEADER_HTML;
-    private static String HOME_HTML;
-    private static String LOBBY_HTML;
+    private static StaticAssetCache.Asset INDEX_PAGE;
+    private static HtmlTemplate LOBBY_PAGE;
+    private static StaticAssetCache STATIC_FILES;
+    private static String CARD_ATLAS_MANIFEST;
 
     @Value("${skullking.cards.url}")
     private String cardsBaseUrl;
 
+    @Value("${skullking.management.port}")
+    private int managementPort;
+
     static {
         try {
-            HEADER_HTML = StaticFileHandler.readFileAsString("layout/header.html");
-            HOME_HTML = StaticFileHandler.readFileAsString("layout/home.html");
-            LOBBY_HTML = StaticFileHandler.readFileAsString("layout/ingame.html");
+            STATIC_FILES = StaticAssetCache.load("htdocs");
+            var cardAtlas = CardAtlas.pack(STATIC_FILES);
+            if (cardAtlas != null) {
+                STATIC_FILES = STATIC_FILES.withFiles(cardAtlas.getFiles());
+                CARD_ATLAS_MANIFEST = cardAtlas.toManifest(STATIC_FILES);
+            }
+
+            // the pages refer to the static files by their fingerprinted paths
+            var headerHtml = STATIC_FILES.replaceUrls(StaticFileHandler.readFileAsString("layout/header.html"));
+            var homeHtml = StaticFileHandler.readFileAsString("layout/home.html");
+            var lobbyHtml = StaticFileHandler.readFileAsString("layout/ingame.html");
+
+            INDEX_PAGE = StaticAssetCache.createAsset(
+                    "index.html", generateHtmlPage(headerHtml, homeHtml).getBytes(StandardCharsets.UTF_8));
+            var buttonHTML =
+                    "<button onclick=\"sk_addBotButtonPressed()\" type=\"button\" class=\"me-2 btn btn-sm btn-outline-secondary d-none\" id=\"sk-add-bot-button\">Bot hinzuf&uuml;gen</button>"
+                            + "<button onclick=\"sk_masterButtonPressed()\" type=\"button\" class=\"btn btn-sm btn-success d-none\" id=\"sk-master-button\">Spiel starten</button>";
+            LOBBY_PAGE = HtmlTemplate.compile(
+                    generateHtmlPage(headerHtml, lobbyHtml.replace("{gameMasterButton}", buttonHTML)),
+                    "playerToken",
+                    "lobbyCode");
         } catch (Exception e) {
-            logger.error("Could not load static html files.", e);
+            logger.error("Could not load static files.", e);
             System.exit(1);
         }
     }
 
     @GetMapping(value = {"", "/", "/index.html"})
-    public String getIndexPage() {
-        return generateHtmlPage(stringBuilder -> stringBuilder.append(HOME_HTML));
+    public ResponseEntity<byte[]> getIndexPage(HttpServletRequest request) {
+        return StaticAssetCache.respond(
+                INDEX_PAGE,
+                request.getHeader(HttpHeaders.IF_NONE_MATCH),
+                request.getHeader(HttpHeaders.ACCEPT_ENCODING));
     }
 
     @GetMapping(value = "/js/{file}", produces = "text/javascript")
-    public ResponseEntity<Object> getJavaScriptFile(@PathVariable String file) {
-        return getFileContentAsResponse("htdocs/js/" + file, false);
+    public ResponseEntity<byte[]> getJavaScriptFile(@PathVariable String file, HttpServletRequest request) {
+        return getStaticFile("js/" + file, request);
     }
 
     @GetMapping(value = "/css/{file}", produces = "text/css")
-    public ResponseEntity<Object> getCssFile(@PathVariable String file) {
-        return getFileContentAsResponse("htdocs/css/" + file, false);
+    public ResponseEntity<byte[]> getCssFile(@PathVariable String file, HttpServletRequest request) {
+        return getStaticFile("css/" + file, request);
     }
 
     @GetMapping(
             value = "/img/{file}.jpg",
-            produces = {"image/jpg"})
-    public ResponseEntity<Object> getImageFile(@PathVariable String file) {
-        return getFileContentAsResponse("htdocs/img/" + file + ".jpg", true);
+            produces = {"image/jpeg"})
+    public ResponseEntity<byte[]> getImageFile(@PathVariable String file, HttpServletRequest request) {
+        return getStaticFile("img/" + file + ".jpg", request);
     }
 
     @GetMapping(
             value = "/img/cards/{file}.png",
             produces = {"image/png"})
-    public ResponseEntity<Object> getCardImageFile(@PathVariable String file) {
+    public ResponseEntity<byte[]> getCardImageFile(@PathVariable String file, HttpServletRequest request) {
         var shouldServerCards = cardsBaseUrl.equals("/img/cards/");
         
         if (!shouldServerCards) {
@@ -75,21 +108,21 @@ public class SkullKingServer {
             return ResponseEntity.notFound().build();
         }
         
-        return getFileContentAsResponse("htdocs/img/cards/" + file + ".png", true);
+        return getStaticFile(CardAtlas.DIRECTORY + file + ".png", request);
     }
 
     @GetMapping(
             value = "/{file}.png",
             produces = {"image/png"})
-    public ResponseEntity<Object> getPngIcon(@PathVariable String file) {
-        return getFileContentAsResponse("htdocs/" + file + ".png", true);
+    public ResponseEntity<byte[]> getPngIcon(@PathVariable String file, HttpServletRequest request) {
+        return getStaticFile(file + ".png", request);
     }
 
     @GetMapping(
-            value = "/favicon.ico",
+            value = "/{file}.ico",
             produces = {"image/x-icon"})
-    public ResponseEntity<Object> getIcoIcon() {
-        return getFileContentAsResponse("htdocs/favicon.ico", true);
+    public ResponseEntity<byte[]> getIcoIcon(@PathVariable String file, HttpServletRequest request) {
+        return getStaticFile(file + ".ico", request);
     }
 
     @GetMapping(
@@ -120,40 +153,141 @@ public class SkullKingServer {
             return new ModelAndView("redirect:/", modelMap);
         }
 
+        var page = LOBBY_PAGE.render(playerToken, String.valueOf(player.game.gameCode));
         return new ModelAndView((model, request, response) -> {
-            var buttonHTML =
-                    "<button onclick=\"sk_masterButtonPressed()\" type=\"button\" class=\"btn btn-sm btn-success d-none\" id=\"sk-master-button\">Spiel starten</button>";
-            response.getWriter()
-                    .write(generateHtmlPage(stringBuilder -> stringBuilder.append(LOBBY_HTML
-                            .replace("{playerToken}", playerToken)
-                            .replace("{lobbyCode}", String.valueOf(player.game.gameCode))
-                            .replace("{gameMasterButton}", buttonHTML))));
+            response.setContentType("text/html;charset=UTF-8");
+            response.setContentLength((int) page.getLength());
+            page.writeTo(response.getOutputStream());
         });
     }
 
-    private ResponseEntity<Object> getFileContentAsResponse(String path, boolean isBinary) {
-        try {
-            Object content;
-            if (isBinary) {
-                content = StaticFileHandler.readeFileContents(path);
-            } else {
-                content = StaticFileHandler.readFileAsString(path);
-            }
-            return ResponseEntity.ok(content);
-        } catch (FileNotFoundException e) {
+    @GetMapping(
+            value = "/game/replay",
+            params = {"token"})
+    public RedirectView redirectToLastReplay(@RequestParam("token") String playerToken) {
+        var tokenUUID = parseUUID(playerToken);
+        var player = tokenUUID == null ? null : Player.getPlayer(tokenUUID);
+        if (player == null) {
+            return new RedirectView("/");
+        }
+        var replayId = player.game.submit(player.game::getLastReplayId).join();
+        if (replayId == null) {
+            return new RedirectView("/game/lobby?token=" + playerToken);
+        }
+        return new RedirectView("/game/replay/" + replayId);
+    }
+
+    /**
+     * The replay of a finished game in the format described in {@link GameReplay}.
+     */
+    @GetMapping(
+            value = "/game/replay/{id}",
+            produces = {"application/octet-stream"})
+    public ResponseEntity<StreamingResponseBody> getReplay(@PathVariable String id) {
+        var replayId = parseUUID(id);
+        var replay = replayId == null ? null : SkullKing.getReplay(replayId);
+        if (replay == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentLength(replay.length)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"skullking-" + replayId + ".replay\"")
+                .body(out -> out.write(replay));
+    }
+
+    /**
+     * Plays a finished game again and streams every game state the given player received, one
+     * JSON snapshot per line.
+     */
+    @GetMapping(
+            value = "/game/replay/{id}/frames",
+            produces = {"application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> getReplayFrames(
+            @PathVariable String id, @RequestParam(value = "player", defaultValue = "0") int playerIndex) {
+        var replayId = parseUUID(id);
+        var replay = replayId == null ? null : SkullKing.getReplay(replayId);
+        if (replay == null) {
             return ResponseEntity.notFound().build();
-        } catch (IOException e) {
-            logger.warn("Failed to load static file from classpath.", e);
-            return ResponseEntity.internalServerError().build();
         }
+        var gameReplay = GameReplay.read(replay);
+        if (playerIndex < 0 || playerIndex >= gameReplay.getPlayerCount()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().body(out -> gameReplay.writeFrames(out, playerIndex));
+    }
+
+    /**
+     * All metrics in the Prometheus text format. Like the admin endpoints, only for requests to the
+     * management port, see {@link ManagementConfiguration}.
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain;version=0.0.4;charset=UTF-8")
+    public ResponseEntity<String> getMetrics(HttpServletRequest request) {
+        if (!isMetricsAccessAllowed(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Metrics.toPrometheusText());
+    }
+
+    @GetMapping(value = "/metrics/json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getMetricsAsJson(HttpServletRequest request) {
+        if (!isMetricsAccessAllowed(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Metrics.toJson());
+    }
+
+    /**
+     * The slowest operations since the start of the server or the last reset, see {@link
+     * SlowOperations}.
+     */
+    @GetMapping(value = "/admin/slow-operations", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SlowOperations.Entry>> getSlowOperations(HttpServletRequest request) {
+        if (!isMetricsAccessAllowed(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(SlowOperations.getSlowest());
+    }
+
+    /**
+     * Returns the slowest operations like {@link #getSlowOperations} and forgets them.
+     */
+    @PostMapping(value = "/admin/slow-operations/reset", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SlowOperations.Entry>> resetSlowOperations(HttpServletRequest request) {
+        if (!isMetricsAccessAllowed(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        var slowest = SlowOperations.getSlowest();
+        SlowOperations.reset();
+        return ResponseEntity.ok(slowest);
+    }
+
+    private boolean isMetricsAccessAllowed(HttpServletRequest request) {
+        // the remote address can't be trusted, behind a local reverse proxy it is always loopback
+        return managementPort > 0 && request.getLocalPort() == managementPort;
+    }
+
+    private static UUID parseUUID(String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The manifest of the card atlas (see {@link CardAtlas#toManifest}), null if there are no card
+     * images to pack.
+     */
+    static String getCardAtlasManifest() {
+        return CARD_ATLAS_MANIFEST;
+    }
+
+    private static ResponseEntity<byte[]> getStaticFile(String path, HttpServletRequest request) {
+        return STATIC_FILES.respond(
+                path, request.getHeader(HttpHeaders.IF_NONE_MATCH), request.getHeader(HttpHeaders.ACCEPT_ENCODING));
     }
 
-    private String generateHtmlPage(Consumer<StringBuilder> body) {
-        var html = new StringBuilder();
-        html.append(HEADER_HTML);
-        html.append("<body>");
-        body.accept(html);
-        html.append("</body></html>");
-        return html.toString();
+    private static String generateHtmlPage(String headerHtml, String bodyHtml) {
+        return headerHtml + "<body>" + bodyHtml + "</body></html>";
     }
 }
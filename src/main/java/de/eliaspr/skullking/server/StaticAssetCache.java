@@ -0,0 +1,310 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * All files of a classpath directory, loaded once at startup. Each file is kept together with its
+ * gzip compressed variant (if compression is worth it), a strong ETag derived from the content and
+ * the matching {@code Cache-Control} header, so a request never touches the classpath and the
+ * cached bytes are written to the response as they are.
+ */
+final class StaticAssetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssetCache.class);
+    private static final Counter bytesServed = Metrics.counter(
+            "skullking_static_bytes_served_total", "Number of bytes of static files sent to clients");
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "css", "text/css;charset=UTF-8",
+            "js", "text/javascript;charset=UTF-8",
+            "html", "text/html;charset=UTF-8",
+            "json", "application/json",
+            "svg", "image/svg+xml",
+            "png", "image/png",
+            "jpg", "image/jpeg",
+            "ico", "image/x-icon");
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("css", "js", "html", "json", "svg", "ico");
+
+    // files like bootstrap-5.3.6.min.js get a new name with every version, so they never change
+    private static final Pattern VERSIONED_FILE_NAME = Pattern.compile(".*-\\d+(\\.\\d+)+(\\.min)?\\.\\w+");
+    private static final CacheControl IMMUTABLE =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    // a quote or parenthesis followed by an absolute path, like in href="/css/file.css" or url(/img/file.jpg)
+    private static final Pattern URL_REFERENCE = Pattern.compile("([\"'(])/([\\w./-]+)(?=[\"')])");
+
+    /**
+     * A cached file. The gzip fields are null if the file is not compressed. The byte arrays are
+     * shared by all responses and must not be modified.
+     */
+    record Asset(
+            MediaType contentType,
+            String fingerprint,
+            byte[] content,
+            String eTag,
+            byte[] gzipContent,
+            String gzipETag,
+            CacheControl cacheControl) {
+
+        Asset withCacheControl(CacheControl cacheControl) {
+            return new Asset(contentType, fingerprint, content, eTag, gzipContent, gzipETag, cacheControl);
+        }
+    }
+
+    private final Map<String, Asset> assets;
+    // path of each file -> the same path with the fingerprint of the content before the extension
+    private final Map<String, String> fingerprintedPaths;
+
+    private StaticAssetCache(Map<String, Asset> assets, Map<String, String> fingerprintedPaths) {
+        this.assets = Map.copyOf(assets);
+        this.fingerprintedPaths = Map.copyOf(fingerprintedPaths);
+    }
+
+    /**
+     * Loads all files below the given classpath directory (e.g. {@code htdocs}), keyed by their
+     * path relative to it.
+     */
+    static StaticAssetCache load(String directory) throws IOException {
+        var startTime = System.nanoTime();
+        var resolver = new PathMatchingResourcePatternResolver(StaticAssetCache.class.getClassLoader());
+        var root = resolver.getResource("classpath:" + directory + "/").getURL().toString();
+        var files = new HashMap<String, byte[]>();
+        for (var resource : resolver.getResources("classpath:" + directory + "/**")) {
+            var url = resource.getURL().toString();
+            if (!resource.isReadable() || url.endsWith("/") || !url.startsWith(root)) {
+                continue;
+            }
+            var path = url.substring(root.length());
+            if (getFileName(path).startsWith(".")) {
+                continue;
+            }
+            try (var stream = resource.getInputStream()) {
+                files.put(path, stream.readAllBytes());
+            }
+        }
+        var cache = new StaticAssetCache(Map.of(), Map.of()).withFiles(files);
+        var totalSize = 0L;
+        for (var path : files.keySet()) {
+            var asset = cache.assets.get(path);
+            totalSize += asset.content.length + (asset.gzipContent == null ? 0 : asset.gzipContent.length);
+        }
+        logger.info("Loaded " + files.size() + " static files (" + totalSize / 1024 + " KiB) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        return cache;
+    }
+
+    /**
+     * Returns a copy of this cache with the given files added. Each file can also be requested by
+     * its {@linkplain #getFingerprintedPath fingerprinted path}, which clients may cache forever.
+     * Absolute paths in stylesheets are replaced by fingerprinted paths before the stylesheet
+     * itself is fingerprinted, so it gets a new path whenever an image it uses changes.
+     */
+    StaticAssetCache withFiles(Map<String, byte[]> files) throws IOException {
+        var assets = new HashMap<>(this.assets);
+        var fingerprintedPaths = new HashMap<>(this.fingerprintedPaths);
+        var paths = files.keySet().stream()
+                .sorted(Comparator.comparing(path -> path.endsWith(".css")))
+                .toList();
+        for (var path : paths) {
+            var content = files.get(path);
+            if (path.endsWith(".css")) {
+                var stylesheet = new String(content, StandardCharsets.UTF_8);
+                content = replaceUrls(stylesheet, fingerprintedPaths).getBytes(StandardCharsets.UTF_8);
+            }
+            var asset = createAsset(getFileName(path), content);
+            var extensionStart = path.lastIndexOf('.');
+            var fingerprintedPath = extensionStart > path.lastIndexOf('/')
+                    ? path.substring(0, extensionStart) + "." + asset.fingerprint + path.substring(extensionStart)
+                    : path + "." + asset.fingerprint;
+            assets.put(path, asset);
+            assets.put(fingerprintedPath, asset.withCacheControl(IMMUTABLE));
+            fingerprintedPaths.put(path, fingerprintedPath);
+        }
+        return new StaticAssetCache(assets, fingerprintedPaths);
+    }
+
+    private static String getFileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Creates the cache entry of a single file, whose content type and caching follow from its
+     * name.
+     */
+    static Asset createAsset(String fileName, byte[] content) throws IOException {
+        var extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        var contentType = CONTENT_TYPES.getOrDefault(extension, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        var fingerprint = fingerprint(content);
+        var eTag = "\"" + fingerprint + "\"";
+        var cacheControl = VERSIONED_FILE_NAME.matcher(fileName).matches() ? IMMUTABLE : REVALIDATE;
+
+        byte[] gzipContent = null;
+        String gzipETag = null;
+        if (COMPRESSIBLE_EXTENSIONS.contains(extension)) {
+            var compressed = gzip(content);
+            // small files hardly get smaller, but the client would still have to decompress them
+            if (compressed.length < content.length * 9L / 10) {
+                gzipContent = compressed;
+                gzipETag = "\"" + fingerprint + "-gzip\"";
+            }
+        }
+        return new Asset(
+                MediaType.parseMediaType(contentType),
+                fingerprint,
+                content,
+                eTag,
+                gzipContent,
+                gzipETag,
+                cacheControl);
+    }
+
+    private static String fingerprint(byte[] content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        var bytes = new ByteArrayOutputStream(content.length / 3);
+        try (var out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * The path under which the current content of the file can be cached forever, e.g. {@code
+     * css/skull-king.e78f1ac65514e7af.css} for {@code css/skull-king.css}. Unknown paths are
+     * returned as they are.
+     */
+    String getFingerprintedPath(String path) {
+        return fingerprintedPaths.getOrDefault(path, path);
+    }
+
+    /**
+     * Replaces all absolute paths of cached files in the given HTML or CSS by their fingerprinted
+     * paths.
+     */
+    String replaceUrls(String text) {
+        return replaceUrls(text, fingerprintedPaths);
+    }
+
+    private static String replaceUrls(String text, Map<String, String> fingerprintedPaths) {
+        return URL_REFERENCE.matcher(text).replaceAll(reference -> {
+            var fingerprintedPath = fingerprintedPaths.get(reference.group(2));
+            return fingerprintedPath == null
+                    ? Matcher.quoteReplacement(reference.group())
+                    : Matcher.quoteReplacement(reference.group(1) + "/" + fingerprintedPath);
+        });
+    }
+
+    /**
+     * Answers a request for the file with the given path: with the gzip variant if the client
+     * accepts it, and with {@code 304 Not Modified} if the client already has the current version.
+     */
+    ResponseEntity<byte[]> respond(String path, String ifNoneMatch, String acceptEncoding) {
+        var asset = assets.get(path);
+        if (asset == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return respond(asset, ifNoneMatch, acceptEncoding);
+    }
+
+    static ResponseEntity<byte[]> respond(Asset asset, String ifNoneMatch, String acceptEncoding) {
+        var compressed = asset.gzipContent != null && acceptsGzip(acceptEncoding);
+        var eTag = compressed ? asset.gzipETag : asset.eTag;
+
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, eTag)) {
+            var notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(asset.cacheControl);
+            if (asset.gzipContent != null) {
+                notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            return notModified.build();
+        }
+
+        var body = compressed ? asset.gzipContent : asset.content;
+        var response = ResponseEntity.ok()
+                .contentType(asset.contentType)
+                .contentLength(body.length)
+                .eTag(eTag)
+                .cacheControl(asset.cacheControl);
+        if (asset.gzipContent != null) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (compressed) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        bytesServed.add(body.length);
+        return response.body(body);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.split(",")) {
+            var parameters = coding.split(";");
+            var name = parameters[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                // "gzip;q=0" explicitly refuses gzip
+                return parameters.length < 2 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the tags of an {@code If-None-Match} header with the weak comparison required for
+     * it by RFC 9110.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (var tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
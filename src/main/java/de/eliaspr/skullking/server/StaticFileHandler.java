@@ -6,7 +6,6 @@ import java.io.IOException;
 
 public class StaticFileHandler {
 
-    // TODO Add cache for file content
     public static byte[] readeFileContents(String file) throws IOException {
         try (var stream = SkullKingServer.class.getResourceAsStream("/" + file)) {
             if (stream == null) {
@@ -0,0 +1,194 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.ScaryMaryMode;
+
+/**
+ * Single-pass parser for the messages of the text protocol:
+ *
+ * <pre>
+ * connect:&lt;token&gt;
+ * disconnect:&lt;token&gt;
+ * game:&lt;token&gt;:(start|continue|resync|addbot|predict&lt;number&gt;|play&lt;card ID&gt;)
+ * </pre>
+ *
+ * The verb, token and argument are decoded directly from the message, without splitting it or
+ * creating substrings. The parse result is stored in the fields of the parser, so each session uses
+ * its own parser instance, which is never accessed concurrently because the messages of a session
+ * are processed one after another.
+ */
+final class TextCommandParser {
+
+    private static final int TOKEN_LENGTH = 36;
+
+    Verb verb;
+    long tokenMostSigBits;
+    long tokenLeastSigBits;
+    int number;
+    Card card;
+    ScaryMaryMode scaryMaryMode;
+
+    /**
+     * Returns false if the message is not a valid command, in which case the fields of the parser
+     * are undefined.
+     */
+    boolean parse(CharSequence message) {
+        card = null;
+        scaryMaryMode = null;
+
+        int offset;
+        var isGameCommand = false;
+        if (startsWith(message, 0, "game:")) {
+            offset = 5;
+            isGameCommand = true;
+        } else if (startsWith(message, 0, "connect:")) {
+            verb = Verb.CONNECT;
+            offset = 8;
+        } else if (startsWith(message, 0, "disconnect:")) {
+            verb = Verb.DISCONNECT;
+            offset = 11;
+        } else {
+            return false;
+        }
+
+        if (!parseToken(message, offset)) {
+            return false;
+        }
+        offset += TOKEN_LENGTH;
+        if (!isGameCommand) {
+            return offset == message.length();
+        }
+        return offset < message.length() && message.charAt(offset) == ':' && parseGameCommand(message, offset + 1);
+    }
+
+    private boolean parseGameCommand(CharSequence message, int start) {
+        // like the original split(":") based parser, anything after a further colon is ignored
+        var end = start;
+        while (end < message.length() && message.charAt(end) != ':') {
+            end++;
+        }
+
+        if (equals(message, start, end, "start")) {
+            verb = Verb.START;
+        } else if (equals(message, start, end, "continue")) {
+            verb = Verb.CONTINUE;
+        } else if (equals(message, start, end, "resync")) {
+            verb = Verb.RESYNC;
+        } else if (equals(message, start, end, "addbot")) {
+            verb = Verb.ADD_BOT;
+        } else if (startsWith(message, start, "predict")) {
+            verb = Verb.PREDICT;
+            return parseNumber(message, start + 7, end);
+        } else if (startsWith(message, start, "play")) {
+            verb = Verb.PLAY;
+            var cardStart = start + 4;
+            if (equalsIgnoreCase(message, cardStart, end, "scarymary_flag")) {
+                card = Card.SCARY_MARY;
+                scaryMaryMode = ScaryMaryMode.PLAY_AS_FLAG;
+            } else if (equalsIgnoreCase(message, cardStart, end, "scarymary_pirate")) {
+                card = Card.SCARY_MARY;
+                scaryMaryMode = ScaryMaryMode.PLAY_AS_PIRATE;
+            } else {
+                card = Card.getCard(message, cardStart, end);
+            }
+            return card != null;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a token in the canonical 8-4-4-4-12 UUID format.
+     */
+    private boolean parseToken(CharSequence message, int start) {
+        if (message.length() < start + TOKEN_LENGTH) {
+            return false;
+        }
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        var digits = 0;
+        for (var i = 0; i < TOKEN_LENGTH; i++) {
+            var c = message.charAt(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+                continue;
+            }
+            var value = Character.digit(c, 16);
+            if (value < 0) {
+                return false;
+            }
+            if (digits < 16) {
+                mostSigBits = (mostSigBits << 4) | value;
+            } else {
+                leastSigBits = (leastSigBits << 4) | value;
+            }
+            digits++;
+        }
+        tokenMostSigBits = mostSigBits;
+        tokenLeastSigBits = leastSigBits;
+        return true;
+    }
+
+    private boolean parseNumber(CharSequence message, int start, int end) {
+        var negative = start < end && message.charAt(start) == '-';
+        if (negative) {
+            start++;
+        }
+        // larger numbers are clamped by the game anyway, this just avoids overflows
+        if (start == end || end - start > 9) {
+            return false;
+        }
+        var value = 0;
+        for (var i = start; i < end; i++) {
+            var digit = message.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        number = negative ? -value : value;
+        return true;
+    }
+
+    private static boolean startsWith(CharSequence message, int offset, String prefix) {
+        if (message.length() - offset < prefix.length()) {
+            return false;
+        }
+        for (var i = 0; i < prefix.length(); i++) {
+            if (message.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(CharSequence message, int start, int end, String value) {
+        return end - start == value.length() && startsWith(message, start, value);
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence message, int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (var i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(message.charAt(start + i)) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    enum Verb {
+        CONNECT,
+        DISCONNECT,
+        START,
+        CONTINUE,
+        RESYNC,
+        ADD_BOT,
+        PREDICT,
+        PLAY
+    }
+}
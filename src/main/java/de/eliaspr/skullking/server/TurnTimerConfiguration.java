@@ -0,0 +1,17 @@
+package de.eliaspr.skullking.server;
+
+import de.eliaspr.skullking.game.Game;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TurnTimerConfiguration {
+
+    public TurnTimerConfiguration(
+            @Value("${skullking.turns.bid-timeout-s}") long bidTimeoutSeconds,
+            @Value("${skullking.turns.play-timeout-s}") long playTimeoutSeconds) {
+        Game.configureTurnTimeouts(
+                TimeUnit.SECONDS.toMillis(bidTimeoutSeconds), TimeUnit.SECONDS.toMillis(playTimeoutSeconds));
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 @Configuration
 @EnableWebSocket
@@ -13,6 +14,18 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
     @Value("${skullking.cards.url}")
     private String cardsBaseUrl;
 
+    @Value("${skullking.ws.send-time-limit-ms}")
+    private long sendTimeLimit;
+
+    @Value("${skullking.ws.send-buffer-limit-bytes}")
+    private long sendBufferSizeLimit;
+
+    @Value("${skullking.ws.ping-interval-ms}")
+    private long pingInterval;
+
+    @Value("${skullking.ws.pong-timeout-ms}")
+    private long pongTimeout;
+
     public ServletServerContainerFactoryBean createWebSocketContainer() {
         var container = new ServletServerContainerFactoryBean();
         container.setMaxBinaryMessageBufferSize(1024000);
@@ -21,6 +34,16 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new WebSocketHandler(cardsBaseUrl), "/ws").setAllowedOrigins("*");
+        PlayerMessenger.configure(sendTimeLimit, sendBufferSizeLimit);
+        // clients which don't request the binary sub-protocol keep using the text protocol
+        var handshakeHandler = new DefaultHandshakeHandler();
+        handshakeHandler.setSupportedProtocols(BinaryProtocol.SUB_PROTOCOL);
+        // the atlas is only used if the card images are served by this server
+        var cardAtlasManifest = cardsBaseUrl.equals("/img/cards/") ? SkullKingServer.getCardAtlasManifest() : null;
+        var heartbeat = new SessionHeartbeat(pingInterval, pongTimeout);
+        heartbeat.start();
+        registry.addHandler(new WebSocketHandler(cardsBaseUrl, cardAtlasManifest, heartbeat), "/ws")
+                .setHandshakeHandler(handshakeHandler)
+                .setAllowedOrigins("*");
     }
 }
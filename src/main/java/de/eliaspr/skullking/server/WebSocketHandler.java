@@ -3,10 +3,15 @@ package de.eliaspr.skullking.server;
 import de.eliaspr.skullking.game.Card;
 import de.eliaspr.skullking.game.Player;
 import de.eliaspr.skullking.game.ScaryMaryMode;
-import java.io.IOException;
+import de.eliaspr.skullking.metrics.Counter;
+import de.eliaspr.skullking.metrics.Metrics;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.AbstractWebSocketHandler;
@@ -14,97 +19,163 @@ import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 public class WebSocketHandler extends AbstractWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketHandler.class);
+    private static final String PLAYER_ATTRIBUTE = "skullking.player";
+    private static final String PARSER_ATTRIBUTE = "skullking.parser";
+    private static final LongAdder openSessions = new LongAdder();
+    private static final Counter[] commandCounters = new Counter[TextCommandParser.Verb.values().length];
 
-    private final String cardsBaseUrl;
+    static {
+        Metrics.gauge("skullking_sessions_open", "Number of open web socket sessions", openSessions::sum);
+        for (var verb : TextCommandParser.Verb.values()) {
+            commandCounters[verb.ordinal()] = Metrics.counter(
+                    "skullking_commands_total",
+                    "Number of commands received from clients by verb",
+                    "verb",
+                    verb.name().toLowerCase());
+        }
+    }
+
+    private final String welcomeMessage;
+    private final SessionHeartbeat heartbeat;
 
-    public WebSocketHandler(String cardsBaseUrl) {
-        this.cardsBaseUrl = cardsBaseUrl;
+    /**
+     * @param cardAtlasManifest the {@linkplain CardAtlas#toManifest manifest} of the card atlas,
+     *     null if the clients load each card image from the base URL
+     */
+    WebSocketHandler(String cardsBaseUrl, String cardAtlasManifest, SessionHeartbeat heartbeat) {
+        this.heartbeat = heartbeat;
+        welcomeMessage = "{\"baseUrl\":\"" + cardsBaseUrl + "\""
+                + (cardAtlasManifest == null ? "" : ",\"atlas\":" + cardAtlasManifest) + "}";
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        openSessions.increment();
+        session.getAttributes().put(PARSER_ATTRIBUTE, new TextCommandParser());
+        heartbeat.register(session);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
-        var msg = message.getPayload();
-        if (msg.startsWith("connect")) {
-            var player = getPlayerFromToken(msg);
-            if (player != null) {
-                logger.info("Player '" + player.name + "' connected with token " + player.accessToken);
-                player.webSocketSession = session;
-                PlayerMessenger.sendMessageToPlayer(player, "{\"baseUrl\":\"" + cardsBaseUrl + "\"}");
-                player.game.broadcastGameState();
-            }
-        } else if (msg.startsWith("disconnect")) {
-            var player = getPlayerFromToken(msg);
-            if (player != null) {
-                logger.info("Player '" + player.name + "' disconnecting");
-                player.webSocketSession = null;
-                player.game.removePlayer(player);
-            }
-        } else if (msg.startsWith("game")) {
-            var spl = msg.split(":");
-            if (spl.length > 2) {
-                UUID token = null;
-                try {
-                    token = UUID.fromString(spl[1]);
-                } catch (IllegalArgumentException ignored) {
-                }
-                if (token != null) {
-                    var player = Player.getPlayer(token);
-                    if (player != null) {
-                        processPlayerCommand(player, spl[2]);
-                    }
-                }
-            }
-        } else if (msg.startsWith("alive")) {
-            try {
-                // send meaningless answer to client
-                session.sendMessage(new TextMessage("{\"aliveAnswer\":" + System.currentTimeMillis() + "}"));
-            } catch (IOException ignored) {
-            }
+        var parser = (TextCommandParser) session.getAttributes().get(PARSER_ATTRIBUTE);
+        if (parser == null || !parser.parse(message.getPayload())) {
+            return;
+        }
+        commandCounters[parser.verb.ordinal()].increment();
+        var player = getPlayer(session, parser.tokenMostSigBits, parser.tokenLeastSigBits);
+        if (player == null) {
+            return;
+        }
+        switch (parser.verb) {
+            case CONNECT -> connectPlayer(session, player);
+            case DISCONNECT -> disconnectPlayer(player);
+            case START -> player.requestGameStart();
+            case CONTINUE -> player.requestGameContinue();
+            case RESYNC -> player.requestStateResync();
+            case ADD_BOT -> player.requestAddBot();
+            case PREDICT -> player.notifyPredictedWins(parser.number);
+            case PLAY -> player.notifyPlayCard(parser.card, parser.scaryMaryMode);
+            default -> {}
         }
     }
 
-    private void processPlayerCommand(Player player, String cmd) {
-        if (cmd.equals("start")) {
-            player.requestGameStart();
-        } else if (cmd.equals("continue")) {
-            player.requestGameContinue();
-        } else if (cmd.startsWith("predict")) {
-            var prediction = cmd.substring(7);
-            try {
-                var predictionNum = Integer.parseInt(prediction);
-                player.notifyPredictedWins(predictionNum);
-            } catch (NumberFormatException ignored) {
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        var frame = message.getPayload();
+        if (frame.remaining() < 1 + BinaryProtocol.TOKEN_LENGTH) {
+            return;
+        }
+        var opcode = frame.get();
+        var verb = getVerb(opcode);
+        if (verb != null) {
+            commandCounters[verb.ordinal()].increment();
+        }
+        var player = getPlayer(session, frame.getLong(), frame.getLong());
+        if (player == null) {
+            return;
+        }
+
+        switch (opcode) {
+            case BinaryProtocol.CMD_CONNECT -> connectPlayer(session, player);
+            case BinaryProtocol.CMD_DISCONNECT -> disconnectPlayer(player);
+            case BinaryProtocol.CMD_START -> player.requestGameStart();
+            case BinaryProtocol.CMD_CONTINUE -> player.requestGameContinue();
+            case BinaryProtocol.CMD_RESYNC -> player.requestStateResync();
+            case BinaryProtocol.CMD_ADD_BOT -> player.requestAddBot();
+            case BinaryProtocol.CMD_PREDICT -> {
+                if (frame.hasRemaining()) {
+                    player.notifyPredictedWins(frame.get() & 0xFF);
+                }
             }
-        } else if (cmd.startsWith("play")) {
-            var cardID = cmd.substring(4);
-            if (cardID.equalsIgnoreCase("scarymary_flag")) {
-                player.notifyPlayCard(Card.SCARY_MARY, ScaryMaryMode.PLAY_AS_FLAG);
-            } else if (cardID.equalsIgnoreCase("scarymary_pirate")) {
-                player.notifyPlayCard(Card.SCARY_MARY, ScaryMaryMode.PLAY_AS_PIRATE);
-            } else {
-                var card = Card.getCard(cardID);
+            case BinaryProtocol.CMD_PLAY -> {
+                var cardIndex = frame.hasRemaining() ? frame.get() & 0xFF : BinaryProtocol.NO_CARD;
+                var card = Card.fromOrdinal(cardIndex);
                 if (card != null) {
-                    player.notifyPlayCard(card, null);
+                    if (card == Card.SCARY_MARY) {
+                        var asPirate = frame.hasRemaining() && frame.get() == 1;
+                        player.notifyPlayCard(
+                                card, asPirate ? ScaryMaryMode.PLAY_AS_PIRATE : ScaryMaryMode.PLAY_AS_FLAG);
+                    } else {
+                        player.notifyPlayCard(card, null);
+                    }
                 }
             }
+            default -> {}
         }
     }
 
-    private Player getPlayerFromToken(String message) {
-        var token = getPlayerToken(message);
-        return token == null ? null : Player.getPlayer(token);
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeat.pongReceived(session);
     }
 
-    private UUID getPlayerToken(String message) {
-        var i = message.indexOf(':');
-        if (i > 0 && i < message.length() - 1) {
-            var tokenStr = message.substring(i + 1);
-            try {
-                return UUID.fromString(tokenStr);
-            } catch (IllegalArgumentException ignored) {
-                return null;
-            }
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        openSessions.decrement();
+        heartbeat.unregister(session);
+        PlayerMessenger.releaseSession(session);
+        if (session.getAttributes().get(PLAYER_ATTRIBUTE) instanceof Player player) {
+            player.connectionClosed(session);
+        }
+    }
+
+    private static TextCommandParser.Verb getVerb(byte opcode) {
+        return switch (opcode) {
+            case BinaryProtocol.CMD_CONNECT -> TextCommandParser.Verb.CONNECT;
+            case BinaryProtocol.CMD_DISCONNECT -> TextCommandParser.Verb.DISCONNECT;
+            case BinaryProtocol.CMD_START -> TextCommandParser.Verb.START;
+            case BinaryProtocol.CMD_CONTINUE -> TextCommandParser.Verb.CONTINUE;
+            case BinaryProtocol.CMD_RESYNC -> TextCommandParser.Verb.RESYNC;
+            case BinaryProtocol.CMD_ADD_BOT -> TextCommandParser.Verb.ADD_BOT;
+            case BinaryProtocol.CMD_PREDICT -> TextCommandParser.Verb.PREDICT;
+            case BinaryProtocol.CMD_PLAY -> TextCommandParser.Verb.PLAY;
+            default -> null;
+        };
+    }
+
+    private void connectPlayer(WebSocketSession session, Player player) {
+        var binaryProtocol = BinaryProtocol.SUB_PROTOCOL.equals(session.getAcceptedProtocol());
+        logger.info("Player '" + player.name + "' connected with token " + player.accessToken
+                + (binaryProtocol ? " (binary protocol)" : ""));
+        session.getAttributes().put(PLAYER_ATTRIBUTE, player);
+        player.connect(session, binaryProtocol, welcomeMessage);
+    }
+
+    private void disconnectPlayer(Player player) {
+        logger.info("Player '" + player.name + "' disconnecting");
+        player.disconnect();
+    }
+
+    /**
+     * Resolves the player of a command. The player which connected via the session is matched by
+     * comparing the token bits, so only commands for other players need a registry lookup.
+     */
+    private Player getPlayer(WebSocketSession session, long tokenMostSigBits, long tokenLeastSigBits) {
+        if (session.getAttributes().get(PLAYER_ATTRIBUTE) instanceof Player player
+                && player.accessToken.getMostSignificantBits() == tokenMostSigBits
+                && player.accessToken.getLeastSignificantBits() == tokenLeastSigBits) {
+            return player;
         }
-        return null;
+        return Player.getPlayer(new UUID(tokenMostSigBits, tokenLeastSigBits));
     }
 }
@@ -0,0 +1,143 @@
+package de.eliaspr.skullking.simulation;
+
+import de.eliaspr.skullking.bot.MonteCarloStrategy;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.GameRandom;
+import de.eliaspr.skullking.game.Player;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+/**
+ * Plays complete games with the real game rules, but without any network connection. Games are
+ * distributed across all cores with a parallel stream. Every game gets its own seed derived from
+ * the simulation seed and the index of the game, so a simulation with the same seed, strategies
+ * and game count always produces the same statistics, regardless of the number of threads.
+ *
+ * <p>Can be started with {@code gradlew simulate --args="--games=1000000 --strategies=greedy,random"}.
+ */
+public class GameSimulator {
+
+    private static final int MONTE_CARLO_ROLLOUTS = 200;
+
+    private final long seed;
+    private final PlayerStrategy[] strategies;
+
+    public GameSimulator(long seed, PlayerStrategy... strategies) {
+        if (strategies.length < 2 || strategies.length > 6) {
+            throw new IllegalArgumentException("A game needs 2 to 6 players, got " + strategies.length);
+        }
+        this.seed = seed;
+        this.strategies = strategies;
+    }
+
+    public SimulationStatistics run(long gameCount) {
+        return LongStream.range(0, gameCount)
+                .parallel()
+                .collect(
+                        () -> new SimulationStatistics(strategies.length),
+                        this::playGame,
+                        SimulationStatistics::merge);
+    }
+
+    private void playGame(SimulationStatistics statistics, long gameIndex) {
+        // derived like the seeds of the server's games, see SkullKing#setMasterSeed
+        var gameSeed = GameRandom.deriveSeed(seed, gameIndex + 1);
+        var rng = new SplittableRandom(GameRandom.mix64(gameSeed));
+        var game = Game.createHeadless(gameSeed, statistics);
+
+        var players = new Player[strategies.length];
+        game.execute(() -> {
+            for (var i = 0; i < players.length; i++) {
+                var name = "Player " + (i + 1);
+                game.addPlayer(name);
+                players[i] = game.getPlayer(name);
+            }
+        });
+        statistics.beginGame(players);
+
+        // headless games apply every command directly, so the state can be inspected right after
+        players[0].requestGameStart();
+        while (game.getGameState() != Game.GameState.FINISHED) {
+            switch (game.getGameState()) {
+                case PREDICTING_WINS -> {
+                    for (var i = 0; i < players.length; i++) {
+                        if (players[i].getPredictedWins() < 0) {
+                            players[i].notifyPredictedWins(strategies[i].predictWins(game, players[i], rng));
+                        }
+                    }
+                }
+                case PLAYING_CARDS -> {
+                    var player = game.getNextPlayer();
+                    var seat = getSeat(players, player);
+                    var cardCount = player.getCurrentCards().size();
+                    var trickCode = strategies[seat].chooseCard(game, player, game.getLegalMoves(player), rng);
+                    player.notifyPlayCard(TrickEngine.getCard(trickCode), TrickEngine.getScaryMaryMode(trickCode));
+                    if (player.getCurrentCards().size() == cardCount) {
+                        throw new IllegalStateException("Strategy of seat " + (seat + 1) + " chose an illegal card");
+                    }
+                }
+                case WAITING_FOR_CONTINUE -> players[0].requestGameContinue();
+                default -> throw new IllegalStateException("Unexpected game state " + game.getGameState());
+            }
+        }
+    }
+
+    private static int getSeat(Player[] players, Player player) {
+        for (var i = 0; i < players.length; i++) {
+            if (players[i] == player) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Player " + player.name + " has no seat");
+    }
+
+    static PlayerStrategy getStrategy(String name) {
+        return switch (name) {
+            case "random" -> new RandomStrategy();
+            case "greedy" -> new GreedyStrategy();
+            case "montecarlo" -> new MonteCarloStrategy(MONTE_CARLO_ROLLOUTS);
+            default -> throw new IllegalArgumentException("Unknown strategy: " + name);
+        };
+    }
+
+    public static void main(String[] args) {
+        var gameCount = 100_000L;
+        var seed = System.nanoTime();
+        var strategyNames = new String[] {"greedy", "random"};
+        for (var arg : args) {
+            if (arg.startsWith("--games=")) {
+                gameCount = Long.parseLong(arg.substring(8));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring(7));
+            } else if (arg.startsWith("--strategies=")) {
+                strategyNames = arg.substring(13).split(",");
+            } else {
+                throw new IllegalArgumentException(
+                        "Unknown argument: " + arg + ", expected --games=<n>, --seed=<n> or --strategies=<a,b,...>");
+            }
+        }
+
+        var strategies = new PlayerStrategy[strategyNames.length];
+        for (var i = 0; i < strategies.length; i++) {
+            strategies[i] = getStrategy(strategyNames[i]);
+        }
+        var simulator = new GameSimulator(seed, strategies);
+
+        var start = System.nanoTime();
+        var statistics = simulator.run(gameCount);
+        var seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(
+                Locale.ROOT,
+                "Simulated %d games with %d players in %.2f s (%.0f games/s, %d threads, seed %d)%n",
+                statistics.getGameCount(),
+                strategies.length,
+                seconds,
+                statistics.getGameCount() / seconds,
+                Runtime.getRuntime().availableProcessors(),
+                seed);
+        statistics.printReport(System.out, strategyNames);
+    }
+}
@@ -0,0 +1,46 @@
+package de.eliaspr.skullking.simulation;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import de.eliaspr.skullking.game.ScaryMaryMode;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.random.RandomGenerator;
+
+/**
+ * Predicts one win for every strong card in the hand. While the player still needs wins it plays
+ * its strongest legal card, afterwards its weakest one.
+ */
+public class GreedyStrategy implements PlayerStrategy {
+
+    private static final int STRONG_CARD = 70;
+
+    @Override
+    public int predictWins(Game game, Player player, RandomGenerator rng) {
+        var wins = 0;
+        for (var bits = player.getCurrentCards().getMask(); bits != 0; bits &= bits - 1) {
+            var card = Card.fromOrdinal(Long.numberOfTrailingZeros(bits));
+            if (TrickEngine.getStrength(card.ordinal()) >= STRONG_CARD) {
+                wins += player.getCurrentCards().getCount(card);
+            }
+        }
+        return wins;
+    }
+
+    @Override
+    public int chooseCard(Game game, Player player, long legalMoves, RandomGenerator rng) {
+        var needsWins = player.getActualWins() < player.getPredictedWins();
+        var scaryMaryMode = needsWins ? ScaryMaryMode.PLAY_AS_PIRATE : ScaryMaryMode.PLAY_AS_FLAG;
+        var best = -1;
+        var bestStrength = 0;
+        for (var bits = legalMoves; bits != 0; bits &= bits - 1) {
+            var trickCode = TrickEngine.getTrickCode(Card.fromOrdinal(Long.numberOfTrailingZeros(bits)), scaryMaryMode);
+            var strength = TrickEngine.getStrength(trickCode);
+            if (best < 0 || (needsWins ? strength > bestStrength : strength < bestStrength)) {
+                best = trickCode;
+                bestStrength = strength;
+            }
+        }
+        return best;
+    }
+}
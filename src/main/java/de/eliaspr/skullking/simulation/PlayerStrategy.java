@@ -0,0 +1,24 @@
+package de.eliaspr.skullking.simulation;
+
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides the moves of a simulated player. One instance is shared by all games of a simulation,
+ * which run in parallel, so implementations must not keep any per-game state.
+ */
+public interface PlayerStrategy {
+
+    /**
+     * Returns the number of tricks the player predicts to win in the current round.
+     */
+    int predictWins(Game game, Player player, RandomGenerator rng);
+
+    /**
+     * Returns the trick code (see {@link de.eliaspr.skullking.game.TrickEngine#getTrickCode}) of
+     * the card to play. {@code legalMoves} is the mask of all card types in the player's hand which
+     * may be played on the current trick, it always contains at least one card.
+     */
+    int chooseCard(Game game, Player player, long legalMoves, RandomGenerator rng);
+}
@@ -0,0 +1,30 @@
+package de.eliaspr.skullking.simulation;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.Player;
+import de.eliaspr.skullking.game.ScaryMaryMode;
+import de.eliaspr.skullking.game.TrickEngine;
+import java.util.random.RandomGenerator;
+
+/**
+ * Predicts a random number of wins and plays a random legal card.
+ */
+public class RandomStrategy implements PlayerStrategy {
+
+    @Override
+    public int predictWins(Game game, Player player, RandomGenerator rng) {
+        return rng.nextInt(game.getRoundIndex() + 1);
+    }
+
+    @Override
+    public int chooseCard(Game game, Player player, long legalMoves, RandomGenerator rng) {
+        var bits = legalMoves;
+        for (var i = rng.nextInt(Long.bitCount(legalMoves)); i > 0; i--) {
+            bits &= bits - 1;
+        }
+        var card = Card.fromOrdinal(Long.numberOfTrailingZeros(bits));
+        var mode = rng.nextBoolean() ? ScaryMaryMode.PLAY_AS_PIRATE : ScaryMaryMode.PLAY_AS_FLAG;
+        return TrickEngine.getTrickCode(card, mode);
+    }
+}
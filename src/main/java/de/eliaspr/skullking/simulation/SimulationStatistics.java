@@ -0,0 +1,191 @@
+package de.eliaspr.skullking.simulation;
+
+import de.eliaspr.skullking.game.Card;
+import de.eliaspr.skullking.game.CardColor;
+import de.eliaspr.skullking.game.Game;
+import de.eliaspr.skullking.game.GameEventSink;
+import de.eliaspr.skullking.game.PlayedCard;
+import de.eliaspr.skullking.game.Player;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Collects the results of simulated games. Each worker thread fills its own instance, which are
+ * merged at the end, so recording a game never touches shared state.
+ */
+public class SimulationStatistics implements GameEventSink {
+
+    private final int playerCount;
+    private final long[] trickWinsByKind = new long[WinningCardKind.values().length];
+    private final long[] trickWinsBySeat;
+    private final long[] scoreSum;
+    private final long[] scoreSquareSum;
+    private final int[] minScore;
+    private final int[] maxScore;
+    private final long[] gamesWon;
+    private long gameCount;
+    private long trickCount;
+    private Player[] currentPlayers;
+
+    public SimulationStatistics(int playerCount) {
+        this.playerCount = playerCount;
+        trickWinsBySeat = new long[playerCount];
+        scoreSum = new long[playerCount];
+        scoreSquareSum = new long[playerCount];
+        minScore = new int[playerCount];
+        maxScore = new int[playerCount];
+        gamesWon = new long[playerCount];
+        Arrays.fill(minScore, Integer.MAX_VALUE);
+        Arrays.fill(maxScore, Integer.MIN_VALUE);
+    }
+
+    private static WinningCardKind getKind(PlayedCard card) {
+        if (card.card == Card.SKULL_KING) {
+            return WinningCardKind.SKULL_KING;
+        } else if (card.isPirate()) {
+            return WinningCardKind.PIRATE;
+        } else if (card.card == Card.MERMAID) {
+            return WinningCardKind.MERMAID;
+        } else if (card.isFlag()) {
+            return WinningCardKind.FLAG;
+        } else if (card.card.cardColor == CardColor.BLACK) {
+            return WinningCardKind.BLACK;
+        }
+        return WinningCardKind.LEAD_COLOR;
+    }
+
+    /**
+     * Must be called before a game is played, the players must be in seat order.
+     */
+    void beginGame(Player[] players) {
+        currentPlayers = players;
+    }
+
+    @Override
+    public void onGameStateChanged(Game game) {}
+
+    @Override
+    public void onTrickCompleted(Game game, PlayedCard winningCard) {
+        trickCount++;
+        trickWinsByKind[getKind(winningCard).ordinal()]++;
+        trickWinsBySeat[getSeat(winningCard.player)]++;
+    }
+
+    @Override
+    public void onGameFinished(Game game) {
+        gameCount++;
+        var bestScore = Integer.MIN_VALUE;
+        for (var i = 0; i < playerCount; i++) {
+            var score = currentPlayers[i].getPointTotal();
+            scoreSum[i] += score;
+            scoreSquareSum[i] += (long) score * score;
+            minScore[i] = Math.min(minScore[i], score);
+            maxScore[i] = Math.max(maxScore[i], score);
+            bestScore = Math.max(bestScore, score);
+        }
+        // shared first places count as a win for every player involved
+        for (var i = 0; i < playerCount; i++) {
+            if (currentPlayers[i].getPointTotal() == bestScore) {
+                gamesWon[i]++;
+            }
+        }
+    }
+
+    private int getSeat(Player player) {
+        for (var i = 0; i < playerCount; i++) {
+            if (currentPlayers[i] == player) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Player " + player.name + " is not part of the current game");
+    }
+
+    void merge(SimulationStatistics other) {
+        gameCount += other.gameCount;
+        trickCount += other.trickCount;
+        for (var i = 0; i < trickWinsByKind.length; i++) {
+            trickWinsByKind[i] += other.trickWinsByKind[i];
+        }
+        for (var i = 0; i < playerCount; i++) {
+            trickWinsBySeat[i] += other.trickWinsBySeat[i];
+            scoreSum[i] += other.scoreSum[i];
+            scoreSquareSum[i] += other.scoreSquareSum[i];
+            minScore[i] = Math.min(minScore[i], other.minScore[i]);
+            maxScore[i] = Math.max(maxScore[i], other.maxScore[i]);
+            gamesWon[i] += other.gamesWon[i];
+        }
+    }
+
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    public long getTrickCount() {
+        return trickCount;
+    }
+
+    public double getAverageScore(int seat) {
+        return gameCount == 0 ? 0 : (double) scoreSum[seat] / gameCount;
+    }
+
+    public double getScoreStandardDeviation(int seat) {
+        if (gameCount == 0) {
+            return 0;
+        }
+        var average = getAverageScore(seat);
+        return Math.sqrt(Math.max((double) scoreSquareSum[seat] / gameCount - average * average, 0));
+    }
+
+    void printReport(PrintStream out, String[] seatNames) {
+        out.println("Trick winners (" + trickCount + " tricks):");
+        for (var kind : WinningCardKind.values()) {
+            var tricks = trickWinsByKind[kind.ordinal()];
+            out.printf(Locale.ROOT, "  %-12s %6.2f %%%n", kind.displayName, percentage(tricks));
+        }
+        out.println("Seats:");
+        out.printf(
+                Locale.ROOT,
+                "  %-4s %-10s %10s %10s %6s %6s %9s %10s%n",
+                "seat",
+                "strategy",
+                "avg score",
+                "std dev",
+                "min",
+                "max",
+                "games won",
+                "tricks won");
+        for (var i = 0; i < playerCount; i++) {
+            out.printf(
+                    Locale.ROOT,
+                    "  %-4d %-10s %10.1f %10.1f %6d %6d %8.2f%% %9.2f%%%n",
+                    i + 1,
+                    seatNames[i],
+                    getAverageScore(i),
+                    getScoreStandardDeviation(i),
+                    minScore[i],
+                    maxScore[i],
+                    gameCount == 0 ? 0 : 100.0 * gamesWon[i] / gameCount,
+                    percentage(trickWinsBySeat[i]));
+        }
+    }
+
+    private double percentage(long tricks) {
+        return trickCount == 0 ? 0 : 100.0 * tricks / trickCount;
+    }
+
+    enum WinningCardKind {
+        SKULL_KING("Skull King"),
+        PIRATE("Pirate"),
+        MERMAID("Mermaid"),
+        BLACK("Black"),
+        LEAD_COLOR("Lead color"),
+        FLAG("Flag");
+
+        final String displayName;
+
+        WinningCardKind(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+}
@@ -18,15 +18,24 @@ function sk_masterButtonPressed() {
     }
 }
 
+function sk_addBotButtonPressed() {
+    sk_sendGameCommand("addbot");
+}
+
 function sk_getPlayerToken() {
     return document.getElementById("player-token").innerText;
 }
 
 let skullKingCardImageBaseUrl = null;
+let skullKingCardAtlas = null;
 let skullKingSocket = null;
 let lastPrediction = -1;
 let lastGameState = "";
 let scaryMaryModal = null;
+let lastStateVersion = -1;
+let lastStateSnapshot = null;
+let turnDeadline = 0;
+let turnTimerInterval = null;
 
 function sk_clientInit(afterBaseUrlSetCallback) {
     skullKingSocket = new WebSocket(((window.location.protocol === "https:") ? "wss://" : "ws://") + window.location.host + "/ws");
@@ -50,15 +59,22 @@ function sk_clientInit(afterBaseUrlSetCallback) {
             if (!skullKingCardImageBaseUrl.endsWith("/"))
                 skullKingCardImageBaseUrl = skullKingCardImageBaseUrl + "/"
             console.log("Base url is set to: " + skullKingCardImageBaseUrl)
+            if ("atlas" in messageJSON) {
+                skullKingCardAtlas = messageJSON["atlas"];
+                // start loading the atlases before the first cards are shown
+                skullKingCardAtlas.images.forEach(image => new Image().src = image.url);
+            }
             afterBaseUrlSetCallback()
-        } else if(!("aliveAnswer" in messageJSON)) {
+        } else if ("patch" in messageJSON) {
+            sk_applyStatePatch(messageJSON);
+        } else if ("turnTimeRemainingMs" in messageJSON) {
+            sk_startTurnTimer(messageJSON["turnTimeRemainingMs"]);
+        } else {
+            lastStateSnapshot = messageJSON;
+            lastStateVersion = "version" in messageJSON ? messageJSON["version"] : -1;
             sk_processBroadcast(messageJSON);
         }
     };
-
-    setInterval(() => {
-        sk_sendMessage("alive:" + sk_getPlayerToken());
-    }, 10000);
 }
 
 function sk_sendMessage(message) {
@@ -66,6 +82,42 @@ function sk_sendMessage(message) {
         skullKingSocket.send(message);
 }
 
+function sk_startTurnTimer(remainingMs) {
+    turnDeadline = Date.now() + remainingMs;
+    if (turnTimerInterval === null)
+        turnTimerInterval = setInterval(sk_dom_displayTurnTimer, 250);
+    sk_dom_displayTurnTimer();
+}
+
+function sk_applyStatePatch(messageJSON) {
+    if (lastStateSnapshot == null || messageJSON["version"] !== lastStateVersion + 1) {
+        // a version was missed, ask the server for a full snapshot
+        console.log("Missed game state version, requesting resync");
+        lastStateSnapshot = null;
+        sk_sendGameCommand("resync");
+        return;
+    }
+
+    let players = lastStateSnapshot["players"];
+    messageJSON["patch"].forEach(function (item) {
+        let player = players[item["index"]];
+        for (const key in item) {
+            if (key !== "index")
+                player[key] = item[key];
+        }
+    });
+
+    let cards = lastStateSnapshot["cards"];
+    messageJSON["removedCards"].forEach(function (item) {
+        let i = cards.indexOf(item);
+        if (i >= 0)
+            cards.splice(i, 1);
+    });
+
+    lastStateVersion = messageJSON["version"];
+    sk_processBroadcast(lastStateSnapshot);
+}
+
 function sk_processBroadcast(messageJSON) {
     let gameState = "WAITING_FOR_START";
     if ("gameState" in messageJSON)
@@ -98,6 +150,14 @@ function sk_processBroadcast(messageJSON) {
     if ("gameMaster" in messageJSON)
         isGameMaster = messageJSON["gameMaster"];
 
+    let addBotButton = document.getElementById("sk-add-bot-button");
+    let playerCount = "players" in messageJSON ? messageJSON["players"].length : 0;
+    if (isGameMaster && (gameState === "FINISHED" || gameState === "WAITING_FOR_START") && playerCount < 6) {
+        addBotButton.classList.remove("d-none");
+    } else {
+        addBotButton.classList.add("d-none");
+    }
+
     let startButton = document.getElementById("sk-master-button");
     if (isGameMaster) {
         if(gameState === "WAITING_FOR_CONTINUE") {
@@ -123,7 +183,17 @@ function sk_dom_getCardImageUrl(cardID) {
 }
 
 function sk_dom_getCardImg(cardID) {
-    return '<img height="200" src="' + sk_dom_getCardImageUrl(cardID) + '"/>';
+    let sprite = skullKingCardAtlas != null ? skullKingCardAtlas.cards[cardID] : undefined;
+    if (sprite === undefined)
+        return '<img height="200" src="' + sk_dom_getCardImageUrl(cardID) + '"/>';
+
+    // sprite is [atlas index, x, y, width, height], scaled to a height of 200 pixels like the images
+    let atlas = skullKingCardAtlas.images[sprite[0]];
+    let scale = 200 / sprite[4];
+    return '<div class="sk-card-sprite" role="img" style="width: ' + sprite[3] * scale + 'px; '
+        + 'background-image: url(\'' + atlas.url + '\'); '
+        + 'background-position: ' + (-sprite[1] * scale) + 'px ' + (-sprite[2] * scale) + 'px; '
+        + 'background-size: ' + atlas.width * scale + 'px ' + atlas.height * scale + 'px;"></div>';
 }
 
 function sk_dom_displayFinishedAndPlayerRanking(players) {
@@ -150,6 +220,7 @@ function sk_dom_displayFinishedAndPlayerRanking(players) {
         });
         newHTML += "</div>";
     }
+    newHTML += '<div class="mt-3"><a href="/game/replay?token=' + sk_getPlayerToken() + '">Replay herunterladen</a></div>';
     newHTML += '</div>';
     document.getElementById("sk-own-cards").innerHTML = newHTML;
 }
@@ -221,6 +292,17 @@ function sk_dom_displayPlayers(players, isCardPlayingMode) {
     }
 }
 
+function sk_dom_displayTurnTimer() {
+    let seconds = Math.ceil((turnDeadline - Date.now()) / 1000);
+    // the timer belongs to the bid or turn which started it, it ends with them
+    if (seconds < 0 || (lastGameState !== "PREDICTING_WINS" && lastGameState !== "PLAYING_CARDS")) {
+        clearInterval(turnTimerInterval);
+        turnTimerInterval = null;
+        seconds = null;
+    }
+    document.getElementById("sk-turn-timer").innerText = seconds == null ? "" : "Noch " + seconds + " s";
+}
+
 function sk_dom_displayPredictUI(round) {
     lastPrediction = -1;
     let predictHTML = '<div class="col p-5">';
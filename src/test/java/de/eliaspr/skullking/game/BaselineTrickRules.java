@@ -0,0 +1,157 @@
+package de.eliaspr.skullking.game;
+
+import java.util.List;
+
+/**
+ * The trick rules as they were implemented in {@code Game} before {@link TrickEngine} existed,
+ * copied unchanged apart from taking the cards as parameters. Serves as the reference for {@link
+ * TrickEngineTest}.
+ */
+final class BaselineTrickRules {
+
+    private BaselineTrickRules() {}
+
+    static boolean isPlayAllowed(PlayedCard playedCard, List<Card> hand, List<PlayedCard> playedCards) {
+        boolean isPlayAllowed;
+        var card = playedCard.card;
+        if (card == Card.FLAG
+                || card.isPirate
+                || card == Card.SKULL_KING
+                || card == Card.SCARY_MARY
+                || card == Card.MERMAID) {
+            isPlayAllowed = true;
+        } else {
+            CardColor forcedColor = null;
+            for (var previous : playedCards) {
+                if (previous.isFlag()) {
+                    continue;
+                }
+                forcedColor = previous.card.cardColor;
+                break;
+            }
+            if (forcedColor == null || !forcedColor.isActualColor) {
+                isPlayAllowed = true;
+            } else {
+                if (playedCard.card.cardColor == forcedColor) {
+                    isPlayAllowed = true;
+                } else if (playedCard.card.cardColor == CardColor.BLACK) {
+                    isPlayAllowed = true;
+                } else {
+                    var doesPlayerHaveColor = false;
+                    for (var playerCard : hand) {
+                        if (playerCard.cardColor == forcedColor) {
+                            doesPlayerHaveColor = true;
+                            break;
+                        }
+                    }
+                    isPlayAllowed = !doesPlayerHaveColor;
+                }
+            }
+        }
+        return isPlayAllowed;
+    }
+
+    /**
+     * Returns the winning card, whose {@code bonusPointsReceived} contain the bonus points of the
+     * trick.
+     */
+    static PlayedCard getWinningCard(List<PlayedCard> playedCards) {
+        if (playedCards.isEmpty()) {
+            return null;
+        }
+
+        var skullKing = wasCardPlayed(Card.SKULL_KING, playedCards);
+        if (skullKing != null) {
+            var firstMermaid = wasCardPlayed(Card.MERMAID, playedCards);
+            if (firstMermaid != null) {
+                firstMermaid.bonusPointsReceived += 50;
+                return firstMermaid;
+            } else {
+                var pirateCount = 0;
+                for (var playedCard : playedCards) {
+                    if (playedCard.isPirate()) {
+                        pirateCount++;
+                    }
+                }
+                skullKing.bonusPointsReceived = pirateCount * 30;
+                return skullKing;
+            }
+        }
+
+        PlayedCard winningCard = null;
+        CardColor acceptedColor = null;
+        for (var next : playedCards) {
+            if (winningCard == null) {
+                winningCard = next;
+                if (!winningCard.isFlag()) {
+                    acceptedColor = winningCard.card.cardColor;
+                }
+            } else {
+                // a flag in 2nd or later position can never win
+                if (next.isFlag()) {
+                    continue;
+                }
+
+                // when the best card is already a pirate, no other card can win
+                // because the cases where a skull was played are previously handled
+                if (winningCard.isPirate()) {
+                    continue;
+                }
+
+                // when a pirate is played, and the highest previous card is not a pirate,
+                // the next pirate will always win
+                if (next.isPirate()) {
+                    winningCard = next;
+                    continue;
+                }
+
+                // when a mermaid is played, it will always win, as long as the previous
+                // highest card is a numeric card
+                if (next.card == Card.MERMAID) {
+                    if (winningCard.card.isNumeric()) {
+                        winningCard = next;
+                        continue;
+                    }
+                }
+
+                // all numeric cards will always lose against a mermaid/pirate
+                if (winningCard.card != Card.MERMAID && !winningCard.isPirate()) {
+                    boolean doesNextCardWin;
+
+                    if (next.card.cardColor == CardColor.BLACK) {
+                        if (winningCard.card.cardColor == CardColor.BLACK) {
+                            doesNextCardWin = next.card.numericValue > winningCard.card.numericValue;
+                        } else {
+                            doesNextCardWin = true;
+                        }
+                    } else {
+                        if (acceptedColor == null) {
+                            doesNextCardWin = true;
+                        } else if (next.card.cardColor == acceptedColor) {
+                            doesNextCardWin = next.card.numericValue > winningCard.card.numericValue;
+                        } else {
+                            doesNextCardWin = false;
+                        }
+                    }
+
+                    if (doesNextCardWin) {
+                        winningCard = next;
+                        if (acceptedColor == null || next.card.cardColor == CardColor.BLACK) {
+                            acceptedColor = next.card.cardColor;
+                        }
+                    }
+                }
+            }
+        }
+        return winningCard;
+    }
+
+    private static PlayedCard wasCardPlayed(Card cardType, List<PlayedCard> playedCards) {
+        for (var playedCard : playedCards) {
+            if (playedCard.card == cardType) {
+                return playedCard;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,120 @@
+package de.eliaspr.skullking.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link TrickEngine} with the rules it replaced ({@link BaselineTrickRules}) on randomly
+ * dealt hands and tricks. The random generators are seeded, so a failure can be reproduced.
+ */
+class TrickEngineTest {
+
+    // tricks per test, override with -PtrickEngineTestIterations for a longer sweep
+    private static final int ITERATIONS = Integer.getInteger("trickEngineTest.iterations", 2_000_000);
+
+    @Test
+    void legalMovesMatchBaseline() {
+        var rng = new SplittableRandom(9);
+        for (var iteration = 0; iteration < ITERATIONS; iteration++) {
+            var deck = shuffledDeck(rng);
+            var playedCards = new ArrayList<PlayedCard>();
+            var trick = new int[6];
+            for (var i = rng.nextInt(6); i > 0; i--) {
+                var playedCard = new PlayedCard(null, deck.remove(deck.size() - 1), randomMode(rng));
+                trick[playedCards.size()] = playedCard.trickCode;
+                playedCards.add(playedCard);
+            }
+            var hand = new ArrayList<>(deck.subList(0, 1 + rng.nextInt(10)));
+            var cardHand = toCardHand(hand);
+
+            var legalMoves = TrickEngine.getLegalMoves(cardHand.getMask(), trick, playedCards.size());
+            for (var card : hand) {
+                var allowed = BaselineTrickRules.isPlayAllowed(new PlayedCard(null, card, null), hand, playedCards);
+                assertEquals(
+                        allowed,
+                        (legalMoves & CardHand.getCardMask(card)) != 0,
+                        () -> "Playing " + card + " from " + hand + " on " + describe(playedCards));
+            }
+        }
+    }
+
+    @Test
+    void resolveMatchesBaselineForLegalTricks() {
+        var rng = new SplittableRandom(11);
+        for (var iteration = 0; iteration < ITERATIONS; iteration++) {
+            var deck = shuffledDeck(rng);
+            var playerCount = 2 + rng.nextInt(5);
+            var handSize = 1 + rng.nextInt(Math.min(10, deck.size() / playerCount));
+            var playedCards = new ArrayList<PlayedCard>();
+            for (var player = 0; player < playerCount; player++) {
+                var hand = new ArrayList<>(deck.subList(player * handSize, (player + 1) * handSize));
+                var legal = hand.stream()
+                        .filter(card -> BaselineTrickRules.isPlayAllowed(
+                                new PlayedCard(null, card, null), hand, playedCards))
+                        .toList();
+                playedCards.add(new PlayedCard(null, legal.get(rng.nextInt(legal.size())), randomMode(rng)));
+            }
+            assertResolvesLikeBaseline(playedCards);
+        }
+    }
+
+    @Test
+    void resolveMatchesBaselineForAnyTrick() {
+        var rng = new SplittableRandom(13);
+        for (var iteration = 0; iteration < ITERATIONS; iteration++) {
+            var deck = shuffledDeck(rng);
+            var playedCards = new ArrayList<PlayedCard>();
+            for (var i = 1 + rng.nextInt(6); i > 0; i--) {
+                playedCards.add(new PlayedCard(null, deck.remove(deck.size() - 1), randomMode(rng)));
+            }
+            assertResolvesLikeBaseline(playedCards);
+        }
+    }
+
+    private static void assertResolvesLikeBaseline(List<PlayedCard> playedCards) {
+        var trick = new int[playedCards.size()];
+        for (var i = 0; i < trick.length; i++) {
+            trick[i] = playedCards.get(i).trickCode;
+        }
+        var result = TrickEngine.resolve(trick, trick.length);
+
+        var winningCard = BaselineTrickRules.getWinningCard(playedCards);
+        assertEquals(playedCards.indexOf(winningCard), TrickEngine.getWinnerIndex(result), () -> describe(playedCards));
+        assertEquals(winningCard.bonusPointsReceived, TrickEngine.getBonusPoints(result), () -> describe(playedCards));
+    }
+
+    private static List<Card> shuffledDeck(SplittableRandom rng) {
+        var deck = new ArrayList<Card>();
+        for (var card : Card.values()) {
+            for (var i = 0; i < card.instanceCount; i++) {
+                deck.add(card);
+            }
+        }
+        Collections.shuffle(deck, rng);
+        return deck;
+    }
+
+    private static ScaryMaryMode randomMode(SplittableRandom rng) {
+        return rng.nextBoolean() ? ScaryMaryMode.PLAY_AS_FLAG : ScaryMaryMode.PLAY_AS_PIRATE;
+    }
+
+    private static CardHand toCardHand(List<Card> cards) {
+        var hand = new CardHand();
+        cards.forEach(hand::add);
+        return hand;
+    }
+
+    private static String describe(List<PlayedCard> playedCards) {
+        return playedCards.stream()
+                .map(playedCard -> playedCard.scaryMaryMode == null
+                        ? playedCard.card.toString()
+                        : playedCard.card + " " + playedCard.scaryMaryMode)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+}